@@ -1,5 +1,11 @@
 package com.spotify;
 
+import com.spotify.client.AudioReceiver;
+import com.spotify.client.ReplyReader;
+import com.spotify.client.SongCache;
+import com.spotify.player.StreamPlayer;
+import com.spotify.protocol.FrameReader;
+import com.spotify.protocol.Frames;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
@@ -8,49 +14,105 @@ import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Scanner;
 
 public class Client {
     private static final Logger logger = LogManager.getLogger(Client.class);
     private static final int SERVER_PORT = 6666;
     private static final String SERVER_HOST = "localhost";
-    private static ByteBuffer buffer = ByteBuffer.allocateDirect(512);
+    private static final String PIPELINE_OPTION = "--pipeline";
+    private static final int PIPELINE_WINDOW = 256;
+    private static final String QUIT = "quit";
+    private static final String CACHE_DIR_PROPERTY = "spotify.cache.dir";
+    private static final String CACHE_BYTES_PROPERTY = "spotify.cache.bytes";
+    private static final long DEFAULT_CACHE_BYTES = 512L * 1024 * 1024;
+
+    private static AudioReceiver audioReceiver;
 
     public static void main(String[] args) {
+        boolean pipelined = args.length > 0 && PIPELINE_OPTION.equals(args[0]);
+        audioReceiver = new AudioReceiver(new StreamPlayer(), openSongCache());
 
         try (SocketChannel socketChannel = SocketChannel.open(); Scanner scanner = new Scanner(System.in)) {
 
             socketChannel.connect(new InetSocketAddress(SERVER_HOST, SERVER_PORT));
+            ReplyReader replyReader = new ReplyReader(new FrameReader(socketChannel), audioReceiver, PIPELINE_WINDOW);
+            new Thread(replyReader, "spotify-reply-reader").start();
 
-            while (true) {
-                String message = scanner.nextLine(); // read a line from the console
+            if (pipelined) {
+                runPipelined(socketChannel, scanner, replyReader);
+            } else {
+                runInteractive(socketChannel, scanner, replyReader);
+            }
 
-                if ("quit".equals(message)) {
-                    break;
-                }
+            // let the replies of the last commands arrive before closing the connection
+            replyReader.awaitAllReplies();
+        } catch (IOException e) {
+            logger.error("There is a problem with the network communication");
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-                buffer.clear(); // switch to writing mode
-                buffer.put(message.getBytes()); // buffer fill
-                buffer.flip(); // switch to reading mode
-                socketChannel.write(buffer); // buffer drain
+    // The console only sends, replies are printed by the reply reader whenever they arrive
+    private static void runInteractive(SocketChannel socketChannel, Scanner scanner, ReplyReader replyReader)
+            throws IOException, InterruptedException {
+        while (scanner.hasNextLine()) {
+            String message = scanner.nextLine(); // read a line from the console
 
-                buffer.clear(); // switch to writing mode
-                socketChannel.read(buffer); // buffer fill
-                buffer.flip(); // switch to reading mode
+            if (QUIT.equals(message)) {
+                break;
+            }
 
-                byte[] byteArray = new byte[buffer.remaining()];
-                buffer.get(byteArray);
-                String reply = new String(byteArray, StandardCharsets.UTF_8); // buffer drain
+            replyReader.awaitRoomFor(1);
+            send(socketChannel, List.of(audioReceiver.withCachedVersion(message)));
+        }
+    }
 
-                // if buffer is a non-direct one, is has a wrapped array and we can get it
-                //String reply = new String(buffer.array(), 0, buffer.position(), "UTF-8"); // buffer drain
+    private static SongCache openSongCache() {
+        Path directory = Path.of(System.getProperty(CACHE_DIR_PROPERTY,
+                Path.of(System.getProperty("user.home"), ".spotify", "cache").toString()));
+        long budget = Long.getLong(CACHE_BYTES_PROPERTY, DEFAULT_CACHE_BYTES);
+        try {
+            return new SongCache(directory, budget);
+        } catch (IOException e) {
+            logger.error("Could not open the song cache, songs will always be streamed");
+            return null;
+        }
+    }
 
-                System.out.println(reply);
+    // Scripted input: sends up to PIPELINE_WINDOW commands in one write, the window only moves on as replies arrive
+    private static void runPipelined(SocketChannel socketChannel, Scanner scanner, ReplyReader replyReader)
+            throws IOException, InterruptedException {
+        boolean quit = false;
+        while (!quit && scanner.hasNextLine()) {
+            List<String> window = new ArrayList<>();
+            while (window.size() < PIPELINE_WINDOW && scanner.hasNextLine()) {
+                String message = scanner.nextLine();
+                if (QUIT.equals(message)) {
+                    quit = true;
+                    break;
+                }
+                window.add(audioReceiver.withCachedVersion(message));
             }
 
-        } catch (IOException e) {
-            logger.error("There is a problem with the network communication");
-            e.printStackTrace();
+            replyReader.awaitRoomFor(window.size());
+            send(socketChannel, window);
+        }
+    }
+
+    private static void send(SocketChannel socketChannel, List<String> messages) throws IOException {
+        StringBuilder requests = new StringBuilder();
+        for (String message : messages) {
+            requests.append(message).append(Frames.REQUEST_DELIMITER);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(requests.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            socketChannel.write(buffer);
         }
     }
 }
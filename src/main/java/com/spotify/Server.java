@@ -1,42 +1,56 @@
 package com.spotify;
 
-import com.spotify.command.CommandCreator;
-import com.spotify.command.CommandExecutor;
+import com.spotify.command.SessionTable;
 import com.spotify.player.MusicPlayer;
+import com.spotify.server.CommandDispatcher;
+import com.spotify.server.SelectorThread;
+import com.spotify.server.ServerConfig;
 import com.spotify.storage.InMemoryStorage;
+import com.spotify.storage.LogStructuredStorage;
+import com.spotify.storage.Storage;
+import com.spotify.storage.StorageMode;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 
 public class Server {
     private static final Logger logger = LogManager.getLogger(Server.class);
-    private static final int BUFFER_SIZE = 1024;
     private static final String HOST = "localhost";
+    private static final int DEFAULT_PORT = 6666;
 
-    private final CommandExecutor commandExecutor = new CommandExecutor(new InMemoryStorage(), new MusicPlayer());
+    private final MusicPlayer musicPlayer = new MusicPlayer();
+    private final SessionTable sessions = new SessionTable();
 
-    private final int port;
-    private boolean isServerWorking;
+    private final ServerConfig config;
+    private final Storage storage;
+    private volatile boolean isServerWorking;
 
-    private ByteBuffer buffer;
     private Selector selector;
+    private CommandDispatcher commandDispatcher;
+    private SelectorThread[] selectorThreads;
+    private int nextSelectorThread = 0;
 
     public Server(int port) {
-        this.port = port;
+        this(ServerConfig.defaults(port));
+    }
+
+    public Server(ServerConfig config) {
+        this.config = config;
+        this.storage = config.storageMode() == StorageMode.LOG ? new LogStructuredStorage() : new InMemoryStorage();
     }
 
     public static void main(String[] args) {
-        Server server = new Server(6666);
+        Server server = new Server(ServerConfig.fromSystemProperties(DEFAULT_PORT));
+        // a killed server still writes out the changes waiting for their group commit and closes its files
+        Runtime.getRuntime().addShutdownHook(new Thread(server::closeStorage, "spotify-storage-close"));
         server.start();
     }
 
@@ -44,7 +58,10 @@ public class Server {
         try (ServerSocketChannel serverSocketChannel = ServerSocketChannel.open()) {
             selector = Selector.open();
             configureServerSocketChannel(serverSocketChannel, selector);
-            this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            startSelectorThreads();
+            if (config.warmUp()) {
+                storage.warmUp();
+            }
             isServerWorking = true;
             while (isServerWorking) {
                 try {
@@ -56,76 +73,74 @@ public class Server {
                     Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
                     while (keyIterator.hasNext()) {
                         SelectionKey key = keyIterator.next();
-                        if (key.isReadable()) {
-                            SocketChannel clientChannel = (SocketChannel) key.channel();
-                            String clientInput = getClientInput(clientChannel);
-                            if (clientInput == null) {
-                                continue;
-                            }
-
-                            String output = commandExecutor.execute(CommandCreator.newCommand(clientInput)).concat(System.lineSeparator());
-                            writeClientOutput(clientChannel, output);
-                            if(output.equals("Successfully disconnected\n")) {
-                                key.cancel();
-                            }
-                        } else if (key.isAcceptable()) {
-                            accept(selector, key);
+                        if (key.isAcceptable()) {
+                            accept(key);
                         }
 
                         keyIterator.remove();
                     }
                 } catch (IOException e) {
-                    logger.error("Count not start server");
+                    logger.error("Could not accept client connection");
                 }
             }
         } catch (IOException e) {
             throw new UncheckedIOException("failed to start server", e);
+        } finally {
+            stopSelectorThreads();
+            if (commandDispatcher != null) {
+                commandDispatcher.shutdown();
+            }
+            closeStorage();
         }
     }
 
     public void stop() {
         this.isServerWorking = false;
-        if (selector.isOpen()) {
+        if (selector != null && selector.isOpen()) {
             selector.wakeup();
         }
     }
 
+    private void closeStorage() {
+        storage.flush();
+        storage.close();
+    }
+
     private void configureServerSocketChannel(ServerSocketChannel channel, Selector selector) throws IOException {
-        channel.bind(new InetSocketAddress(HOST, this.port));
+        channel.bind(new InetSocketAddress(HOST, config.port()));
         channel.configureBlocking(false);
         channel.register(selector, SelectionKey.OP_ACCEPT);
     }
 
-    private String getClientInput(SocketChannel clientChannel) throws IOException {
-        buffer.clear();
-
-        int readBytes = clientChannel.read(buffer);
-        if (readBytes < 0) {
-            clientChannel.close();
-            return null;
+    private void startSelectorThreads() throws IOException {
+        commandDispatcher = new CommandDispatcher(config.dispatchMode(), config.workerThreads());
+        selectorThreads = new SelectorThread[config.selectorThreads()];
+        for (int i = 0; i < selectorThreads.length; i++) {
+            selectorThreads[i] = new SelectorThread(storage, sessions, musicPlayer, commandDispatcher,
+                    config.playbackMode());
+            new Thread(selectorThreads[i], "spotify-selector-" + i).start();
         }
-
-        buffer.flip();
-
-        byte[] clientInputBytes = new byte[buffer.remaining()];
-        buffer.get(clientInputBytes);
-
-        return new String(clientInputBytes, StandardCharsets.UTF_8);
     }
 
-    private void writeClientOutput(SocketChannel clientChannel, String output) throws IOException {
-        buffer.clear();
-        buffer.put(output.getBytes());
-        buffer.flip();
-
-        clientChannel.write(buffer);
+    private void stopSelectorThreads() {
+        if (selectorThreads == null) {
+            return;
+        }
+        for (SelectorThread selectorThread : selectorThreads) {
+            if (selectorThread != null) {
+                selectorThread.stop();
+            }
+        }
     }
 
-    private void accept(Selector selector, SelectionKey key) throws IOException {
+    private void accept(SelectionKey key) throws IOException {
         ServerSocketChannel sockChannel = (ServerSocketChannel) key.channel();
         SocketChannel accept = sockChannel.accept();
+        if (accept == null) {
+            return;
+        }
 
-        accept.configureBlocking(false);
-        accept.register(selector, SelectionKey.OP_READ);
+        selectorThreads[nextSelectorThread].register(accept);
+        nextSelectorThread = (nextSelectorThread + 1) % selectorThreads.length;
     }
 }
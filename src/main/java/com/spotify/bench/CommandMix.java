@@ -0,0 +1,73 @@
+package com.spotify.bench;
+
+import com.spotify.protocol.Opcode;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+// Weighted choice of the commands a simulated client sends once it is logged in, written as
+// comma separated command=weight pairs such as search=40,top=20,play=5
+public class CommandMix {
+    public static final String DEFAULT = "search=35,top=20,add-song-to=20,login=10,register=10,play=5";
+
+    private static final Opcode[] SUPPORTED = {
+            Opcode.REGISTER, Opcode.LOGIN, Opcode.SEARCH, Opcode.TOP, Opcode.PLAY, Opcode.ADD_SONG_TO
+    };
+
+    private final Opcode[] opcodes;
+    private final int[] cumulativeWeights;
+    private final int totalWeight;
+
+    private CommandMix(Map<Opcode, Integer> weights) {
+        opcodes = weights.keySet().toArray(new Opcode[0]);
+        cumulativeWeights = new int[opcodes.length];
+        int total = 0;
+        for (int i = 0; i < opcodes.length; i++) {
+            total += weights.get(opcodes[i]);
+            cumulativeWeights[i] = total;
+        }
+        totalWeight = total;
+    }
+
+    public static CommandMix parse(String mix) {
+        Map<Opcode, Integer> weights = new EnumMap<>(Opcode.class);
+        for (String entry : mix.split(",")) {
+            String[] pair = entry.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected command=weight but got " + entry);
+            }
+            Opcode opcode = supported(pair[0].trim());
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight for " + pair[0]);
+            }
+            if (weight > 0) {
+                weights.merge(opcode, weight, Integer::sum);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("The command mix is empty");
+        }
+        return new CommandMix(weights);
+    }
+
+    public Opcode next(SplittableRandom random) {
+        int pick = random.nextInt(totalWeight);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return opcodes[i];
+            }
+        }
+        return opcodes[opcodes.length - 1];
+    }
+
+    private static Opcode supported(String command) {
+        for (Opcode opcode : SUPPORTED) {
+            if (opcode.command().equals(command)) {
+                return opcode;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported command in mix " + command);
+    }
+}
@@ -0,0 +1,50 @@
+package com.spotify.bench;
+
+import java.time.Duration;
+
+public record LoadConfig(String host, int port, int connections, int threads, Duration duration, CommandMix mix,
+                         int maxPendingConnects) {
+    private static final String DEFAULT_HOST = "localhost";
+    private static final int DEFAULT_PORT = 6666;
+    private static final int DEFAULT_CONNECTIONS = 1000;
+    private static final int DEFAULT_DURATION_SECONDS = 30;
+    private static final int DEFAULT_MAX_PENDING_CONNECTS = 128;
+
+    public static final String USAGE = "Usage: LoadGenerator [--host <host>] [--port <port>] [--connections <n>]"
+            + " [--threads <n>] [--duration <seconds>] [--mix <command=weight,...>] [--max-pending-connects <n>]";
+
+    public LoadConfig {
+        if (connections <= 0 || threads <= 0 || maxPendingConnects <= 0 || duration.isNegative()) {
+            throw new IllegalArgumentException(USAGE);
+        }
+    }
+
+    public static LoadConfig parse(String[] args) {
+        String host = DEFAULT_HOST;
+        int port = DEFAULT_PORT;
+        int connections = DEFAULT_CONNECTIONS;
+        int threads = Math.min(4, Runtime.getRuntime().availableProcessors());
+        Duration duration = Duration.ofSeconds(DEFAULT_DURATION_SECONDS);
+        String mix = CommandMix.DEFAULT;
+        int maxPendingConnects = DEFAULT_MAX_PENDING_CONNECTS;
+
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException(USAGE);
+            }
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--host" -> host = value;
+                case "--port" -> port = Integer.parseInt(value);
+                case "--connections" -> connections = Integer.parseInt(value);
+                case "--threads" -> threads = Integer.parseInt(value);
+                case "--duration" -> duration = Duration.ofSeconds(Long.parseLong(value));
+                case "--mix" -> mix = value;
+                case "--max-pending-connects" -> maxPendingConnects = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException(USAGE);
+            }
+        }
+        return new LoadConfig(host, port, connections, Math.min(threads, connections), duration,
+                CommandMix.parse(mix), maxPendingConnects);
+    }
+}
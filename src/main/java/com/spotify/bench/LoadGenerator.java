@@ -0,0 +1,110 @@
+package com.spotify.bench;
+
+import com.spotify.command.Status;
+import com.spotify.protocol.BinaryProtocol;
+import com.spotify.protocol.BinaryReply;
+import com.spotify.protocol.Frame;
+import com.spotify.protocol.FrameReader;
+import com.spotify.protocol.Opcode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Opens many simulated clients against a running Server and reports throughput together with
+// the latency distribution of every command and of the connection setup
+public class LoadGenerator {
+    private static final String PASSWORD = "bench";
+    private static final String CATALOG_SIZE = String.valueOf(Integer.MAX_VALUE);
+
+    public static void main(String[] args) throws InterruptedException {
+        LoadConfig config;
+        try {
+            config = LoadConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+
+        String runId = Long.toHexString(System.currentTimeMillis());
+        List<String> songs = fetchCatalog(config, "bench-" + runId);
+        if (songs.isEmpty()) {
+            System.err.println("The server has no songs to search, play or add to playlists");
+            return;
+        }
+
+        LoadStats stats = run(config, runId, songs);
+        stats.print(System.out, config.connections(), config.duration().toNanos() / 1e9);
+    }
+
+    public static LoadStats run(LoadConfig config, String runId, List<String> songs) throws InterruptedException {
+        long deadline = System.nanoTime() + config.duration().toNanos();
+        SplittableRandom random = new SplittableRandom();
+        List<LoadWorker> workers = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < config.threads(); i++) {
+            int connections = config.connections() / config.threads() + (i < config.connections() % config.threads() ? 1 : 0);
+            LoadWorker worker = new LoadWorker(config, connections, "bench-" + runId + "-" + i + "-", songs, deadline,
+                    random.split());
+            Thread thread = new Thread(worker, "spotify-load-" + i);
+            workers.add(worker);
+            threads.add(thread);
+            thread.start();
+        }
+
+        LoadStats stats = new LoadStats();
+        for (int i = 0; i < threads.size(); i++) {
+            threads.get(i).join();
+            stats.add(workers.get(i).stats());
+        }
+        return stats;
+    }
+
+    // The songs to use in the commands are taken from the server itself through a top query over the whole catalog
+    private static List<String> fetchCatalog(LoadConfig config, String user) {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(config.host(), config.port()))) {
+            FrameReader frameReader = new FrameReader(channel);
+            write(channel, BinaryProtocol.handshake());
+            expectOk(frameReader);
+            write(channel, BinaryProtocol.encodeRequest(Opcode.REGISTER, user, PASSWORD));
+            expectOk(frameReader);
+            write(channel, BinaryProtocol.encodeRequest(Opcode.LOGIN, user, PASSWORD));
+            expectOk(frameReader);
+            write(channel, BinaryProtocol.encodeRequest(Opcode.TOP, CATALOG_SIZE));
+            List<String> songs = new ArrayList<>();
+            BinaryReply reply = expectOk(frameReader);
+            while (true) {
+                for (BinaryReply.SongEntry song : reply.songs()) {
+                    songs.add(song.fullName());
+                }
+                if (reply.cursor() == null) {
+                    return songs;
+                }
+                write(channel, BinaryProtocol.encodeRequest(Opcode.TOP, CATALOG_SIZE, "--cursor", reply.cursor()));
+                reply = expectOk(frameReader);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not fetch the song catalog from the server", e);
+        }
+    }
+
+    private static BinaryReply expectOk(FrameReader frameReader) throws IOException {
+        Frame frame = frameReader.read();
+        BinaryReply reply = BinaryProtocol.decodeReply(frame.payload());
+        if (reply.status() != Status.OK) {
+            throw new IOException("Server replied " + reply.status() + ": " + reply.message());
+        }
+        return reply;
+    }
+
+    private static void write(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
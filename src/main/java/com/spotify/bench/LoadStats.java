@@ -0,0 +1,86 @@
+package com.spotify.bench;
+
+import com.spotify.protocol.Opcode;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+
+// Latencies and failures seen by one load worker; workers merge theirs into one report at the end
+public class LoadStats {
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final String ROW_FORMAT = "%-16s %9s %7s %9s %9s %9s %9s%n";
+    private static final String MILLIS_FORMAT = "%.3f";
+
+    private final Map<Opcode, LatencyHistogram> commands = new EnumMap<>(Opcode.class);
+    private final Map<Opcode, Long> errors = new EnumMap<>(Opcode.class);
+    private final LatencyHistogram connect = new LatencyHistogram();
+    private final LatencyHistogram handshake = new LatencyHistogram();
+    private final LatencyHistogram session = new LatencyHistogram();
+    private long failedConnections = 0;
+    private long unfinishedConnections = 0;
+    private long measuredReplies = 0;
+
+    void recordReply(Opcode opcode, long nanos, boolean ok, boolean measured) {
+        commands.computeIfAbsent(opcode, key -> new LatencyHistogram()).record(nanos);
+        if (!ok) {
+            errors.merge(opcode, 1L, Long::sum);
+        }
+        if (measured) {
+            measuredReplies++;
+        }
+    }
+
+    void recordConnect(long nanos) {
+        connect.record(nanos);
+    }
+
+    void recordHandshake(long nanos) {
+        handshake.record(nanos);
+    }
+
+    void recordSession(long nanos) {
+        session.record(nanos);
+    }
+
+    void recordFailedConnection() {
+        failedConnections++;
+    }
+
+    // Clients that were still waiting for a reply when the worker gave up on them
+    void recordUnfinishedConnections(long count) {
+        unfinishedConnections += count;
+    }
+
+    void add(LoadStats other) {
+        other.commands.forEach((opcode, histogram) ->
+                commands.computeIfAbsent(opcode, key -> new LatencyHistogram()).add(histogram));
+        other.errors.forEach((opcode, count) -> errors.merge(opcode, count, Long::sum));
+        connect.add(other.connect);
+        handshake.add(other.handshake);
+        session.add(other.session);
+        failedConnections += other.failedConnections;
+        unfinishedConnections += other.unfinishedConnections;
+        measuredReplies += other.measuredReplies;
+    }
+
+    public void print(PrintStream out, int connections, double seconds) {
+        out.printf("connections %d, failed %d, unfinished %d, duration %.1f s, throughput %.0f replies/s%n",
+                connections, failedConnections, unfinishedConnections, seconds, measuredReplies / seconds);
+        out.printf(ROW_FORMAT, "", "count", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        printRow(out, "tcp connect", connect, 0);
+        printRow(out, "handshake", handshake, 0);
+        printRow(out, "session setup", session, 0);
+        commands.forEach((opcode, histogram) ->
+                printRow(out, opcode.command(), histogram, errors.getOrDefault(opcode, 0L)));
+    }
+
+    private static void printRow(PrintStream out, String name, LatencyHistogram histogram, long errorCount) {
+        out.printf(ROW_FORMAT, name, histogram.count(), errorCount, millis(histogram.percentile(50)),
+                millis(histogram.percentile(99)), millis(histogram.percentile(99.9)), millis(histogram.max()));
+    }
+
+    private static String millis(long nanos) {
+        return String.format(MILLIS_FORMAT, nanos / NANOS_PER_MILLI);
+    }
+}
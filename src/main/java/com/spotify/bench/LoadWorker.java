@@ -0,0 +1,120 @@
+package com.spotify.bench;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Drives its share of the simulated clients from a single selector
+class LoadWorker implements Runnable {
+    private static final Logger logger = LogManager.getLogger(LoadWorker.class);
+    private static final long SELECT_TIMEOUT_MILLIS = 100;
+    private static final long SHUTDOWN_GRACE_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final LoadConfig config;
+    private final int connections;
+    private final String userPrefix;
+    private final List<String> songs;
+    private final long deadline;
+    private final SplittableRandom random;
+    private final LoadStats stats = new LoadStats();
+    private int opened = 0;
+    private int connecting = 0;
+    private int active = 0;
+
+    LoadWorker(LoadConfig config, int connections, String userPrefix, List<String> songs, long deadline,
+               SplittableRandom random) {
+        this.config = config;
+        this.connections = connections;
+        this.userPrefix = userPrefix;
+        this.songs = songs;
+        this.deadline = deadline;
+        this.random = random;
+    }
+
+    LoadStats stats() {
+        return stats;
+    }
+
+    @Override
+    public void run() {
+        try (Selector selector = Selector.open()) {
+            while ((opened < connections || active > 0) && System.nanoTime() < deadline + SHUTDOWN_GRACE_NANOS) {
+                openConnections(selector);
+                selector.select(SELECT_TIMEOUT_MILLIS);
+                Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+                while (keyIterator.hasNext()) {
+                    SelectionKey key = keyIterator.next();
+                    keyIterator.remove();
+                    handle(key);
+                }
+            }
+            stats.recordUnfinishedConnections(active);
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+        } catch (IOException e) {
+            logger.error("Load worker stopped because its selector failed");
+        }
+    }
+
+    // Connections are opened gradually so the server's accept backlog is not overrun
+    private void openConnections(Selector selector) {
+        while (opened < connections && connecting < config.maxPendingConnects() && System.nanoTime() < deadline) {
+            opened++;
+            try {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                SimulatedClient client = new SimulatedClient(channel, userPrefix + opened, songs, config.mix(),
+                        random.split(), stats, deadline);
+                channel.connect(new InetSocketAddress(config.host(), config.port()));
+                channel.register(selector, SelectionKey.OP_CONNECT, client);
+                connecting++;
+                active++;
+            } catch (IOException e) {
+                stats.recordFailedConnection();
+            }
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        SimulatedClient client = (SimulatedClient) key.attachment();
+        try {
+            if (key.isConnectable()) {
+                client.channel().finishConnect();
+                connecting--;
+                client.connected();
+            } else if (key.isWritable()) {
+                client.flush();
+            } else if (key.isReadable() && !client.read()) {
+                close(key, client);
+                return;
+            }
+            key.interestOps(SelectionKey.OP_READ | (client.hasPendingWrite() ? SelectionKey.OP_WRITE : 0));
+        } catch (IOException e) {
+            stats.recordFailedConnection();
+            close(key, client);
+        }
+    }
+
+    private void close(SelectionKey key, SimulatedClient client) {
+        if (client.isConnecting()) {
+            connecting--;
+        }
+        active--;
+        key.cancel();
+        try {
+            client.channel().close();
+        } catch (IOException e) {
+            logger.error("Could not close simulated client connection");
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.spotify.bench;
+
+import com.spotify.command.Status;
+import com.spotify.protocol.BinaryProtocol;
+import com.spotify.protocol.Frames;
+import com.spotify.protocol.Opcode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// One closed-loop connection: handshake, register, login and create a playlist, then keep exactly one
+// command of the mix in flight until the deadline. Audio frames of played songs are skipped unread.
+class SimulatedClient {
+    private static final int INITIAL_READ_BUFFER_SIZE = 4096;
+    private static final String PASSWORD = "bench";
+    private static final String TOP_COUNT = "10";
+
+    private enum State {CONNECTING, HANDSHAKE, REGISTER, LOGIN, CREATE_PLAYLIST, RUNNING}
+
+    private final SocketChannel channel;
+    private final String user;
+    private final List<String> songs;
+    private final CommandMix mix;
+    private final SplittableRandom random;
+    private final LoadStats stats;
+    private final long deadline;
+    private final long connectStart;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+    private ByteBuffer pendingWrite;
+    private State state = State.CONNECTING;
+    private Opcode inFlight;
+    private long sentAt;
+    private long skipRemaining = 0;
+    private int requiredCapacity = 0;
+    private int registrations = 0;
+    private boolean stopAfterPlay = false;
+
+    SimulatedClient(SocketChannel channel, String user, List<String> songs, CommandMix mix, SplittableRandom random,
+                    LoadStats stats, long deadline) {
+        this.channel = channel;
+        this.user = user;
+        this.songs = songs;
+        this.mix = mix;
+        this.random = random;
+        this.stats = stats;
+        this.deadline = deadline;
+        this.connectStart = System.nanoTime();
+    }
+
+    SocketChannel channel() {
+        return channel;
+    }
+
+    boolean isConnecting() {
+        return state == State.CONNECTING;
+    }
+
+    boolean hasPendingWrite() {
+        return pendingWrite != null && pendingWrite.hasRemaining();
+    }
+
+    void connected() throws IOException {
+        long now = System.nanoTime();
+        stats.recordConnect(now - connectStart);
+        state = State.HANDSHAKE;
+        sentAt = now;
+        send(BinaryProtocol.handshake());
+    }
+
+    void flush() throws IOException {
+        channel.write(pendingWrite);
+    }
+
+    // Returns false once the client is done and its connection should be closed
+    boolean read() throws IOException {
+        if (readBuffer.capacity() < requiredCapacity) {
+            readBuffer = grow(readBuffer, requiredCapacity);
+        } else if (!readBuffer.hasRemaining()) {
+            readBuffer = grow(readBuffer, readBuffer.capacity() * 2);
+        }
+        if (channel.read(readBuffer) < 0) {
+            throw new IOException("Connection closed by the server");
+        }
+        readBuffer.flip();
+        try {
+            return processFrames();
+        } finally {
+            readBuffer.compact();
+        }
+    }
+
+    private boolean processFrames() throws IOException {
+        while (true) {
+            if (skipRemaining > 0) {
+                int skipped = (int) Math.min(skipRemaining, readBuffer.remaining());
+                readBuffer.position(readBuffer.position() + skipped);
+                skipRemaining -= skipped;
+                if (skipRemaining > 0) {
+                    return true;
+                }
+            }
+            if (readBuffer.remaining() < Frames.HEADER_SIZE) {
+                return true;
+            }
+            int start = readBuffer.position();
+            byte type = readBuffer.get(start);
+            int length = readBuffer.getInt(start + 1);
+            if (type != Frames.BINARY_REPLY) {
+                readBuffer.position(start + Frames.HEADER_SIZE);
+                skipRemaining = length;
+                continue;
+            }
+            if (readBuffer.remaining() < Frames.HEADER_SIZE + length) {
+                requiredCapacity = Frames.HEADER_SIZE + length;
+                return true;
+            }
+            Status status = Status.fromCode(readBuffer.get(start + Frames.HEADER_SIZE));
+            readBuffer.position(start + Frames.HEADER_SIZE + length);
+            if (!onReply(status == Status.OK)) {
+                return false;
+            }
+        }
+    }
+
+    private boolean onReply(boolean ok) throws IOException {
+        long now = System.nanoTime();
+        switch (state) {
+            case HANDSHAKE -> {
+                stats.recordHandshake(now - sentAt);
+                state = State.REGISTER;
+                return setupStep(Opcode.REGISTER, ok, user, PASSWORD);
+            }
+            case REGISTER -> {
+                stats.recordReply(Opcode.REGISTER, now - sentAt, ok, false);
+                state = State.LOGIN;
+                return setupStep(Opcode.LOGIN, ok, user, PASSWORD);
+            }
+            case LOGIN -> {
+                stats.recordReply(Opcode.LOGIN, now - sentAt, ok, false);
+                state = State.CREATE_PLAYLIST;
+                return setupStep(Opcode.CREATE_PLAYLIST, ok, user);
+            }
+            case CREATE_PLAYLIST -> {
+                stats.recordReply(Opcode.CREATE_PLAYLIST, now - sentAt, ok, false);
+                if (!ok) {
+                    stats.recordFailedConnection();
+                    return false;
+                }
+                stats.recordSession(now - connectStart);
+                state = State.RUNNING;
+            }
+            default -> stats.recordReply(inFlight, now - sentAt, ok, true);
+        }
+        if (now >= deadline && !stopAfterPlay) {
+            return false;
+        }
+        sendNext();
+        return true;
+    }
+
+    private boolean setupStep(Opcode next, boolean previousOk, String... arguments) throws IOException {
+        if (!previousOk) {
+            stats.recordFailedConnection();
+            return false;
+        }
+        sendCommand(next, arguments);
+        return true;
+    }
+
+    private void sendNext() throws IOException {
+        if (stopAfterPlay) {
+            // a played song is stopped right away so streaming does not swamp the loopback
+            stopAfterPlay = false;
+            sendCommand(Opcode.STOP);
+            return;
+        }
+        Opcode opcode = mix.next(random);
+        switch (opcode) {
+            case REGISTER -> sendCommand(opcode, user + "-" + ++registrations, PASSWORD);
+            case LOGIN -> sendCommand(opcode, user, PASSWORD);
+            case SEARCH -> sendCommand(opcode, randomWord());
+            case TOP -> sendCommand(opcode, TOP_COUNT);
+            case PLAY -> {
+                stopAfterPlay = true;
+                sendCommand(opcode, randomSong());
+            }
+            case ADD_SONG_TO -> sendCommand(opcode, user, randomSong());
+            default -> throw new IllegalStateException("Unsupported command " + opcode);
+        }
+    }
+
+    private void sendCommand(Opcode opcode, String... arguments) throws IOException {
+        inFlight = opcode;
+        sentAt = System.nanoTime();
+        send(BinaryProtocol.encodeRequest(opcode, arguments));
+    }
+
+    private void send(ByteBuffer request) throws IOException {
+        pendingWrite = request;
+        channel.write(pendingWrite);
+    }
+
+    private String randomSong() {
+        return songs.get(random.nextInt(songs.size()));
+    }
+
+    private String randomWord() {
+        String[] words = randomSong().split(" ");
+        return words[random.nextInt(words.length)];
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+        ByteBuffer grown = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+}
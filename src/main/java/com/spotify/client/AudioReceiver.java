@@ -0,0 +1,110 @@
+package com.spotify.client;
+
+import com.spotify.player.StreamPlayer;
+import com.spotify.player.WavHeader;
+import com.spotify.protocol.AudioStart;
+import com.spotify.protocol.Frame;
+import com.spotify.protocol.Frames;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Plays the audio frames of a streamed song and keeps complete streams in the song cache
+public class AudioReceiver {
+    private static final Logger logger = LogManager.getLogger(AudioReceiver.class);
+    private static final int READ_CHUNK_SIZE = 64 * 1024;
+    private static final String PLAY_COMMAND = "play ";
+    private static final String OPTION_PREFIX = "--";
+    private static final String CACHED_OPTION = " --cached ";
+
+    private final StreamPlayer streamPlayer;
+    private final SongCache songCache;
+    private SongCache.Writer cacheWriter;
+
+    public AudioReceiver(StreamPlayer streamPlayer, SongCache songCache) {
+        this.streamPlayer = streamPlayer;
+        this.songCache = songCache;
+    }
+
+    // Asks the server to skip the stream when the requested song is already cached in its current version
+    public String withCachedVersion(String message) {
+        if (songCache == null || !message.startsWith(PLAY_COMMAND) || message.contains(OPTION_PREFIX)) {
+            return message;
+        }
+        String songName = message.substring(PLAY_COMMAND.length()).replace("\"", "").trim();
+        long version = songCache.version(songName);
+        return version < 0 ? message : message + CACHED_OPTION + Long.toHexString(version);
+    }
+
+    public void handle(Frame frame) throws IOException {
+        switch (frame.type()) {
+            case Frames.AUDIO_START -> start(AudioStart.decode(frame.payload()));
+            case Frames.AUDIO_DATA -> {
+                streamPlayer.write(frame.payload());
+                if (cacheWriter != null) {
+                    cacheWriter.write(frame.payload());
+                }
+            }
+            case Frames.AUDIO_END -> end();
+            case Frames.AUDIO_CACHED -> playCached(frame.payload());
+            default -> throw new IOException("Unexpected audio frame type " + frame.type());
+        }
+    }
+
+    private void start(AudioStart audioStart) throws IOException {
+        System.out.println("Streaming " + audioStart.songName());
+        streamPlayer.start(audioStart.header().toAudioFormat());
+        closeCacheWriter();
+        if (songCache != null && audioStart.offset() == 0) {
+            cacheWriter = songCache.open(audioStart.songName(), audioStart.header(), audioStart.version());
+        }
+    }
+
+    private void end() throws IOException {
+        streamPlayer.end();
+        if (cacheWriter != null) {
+            cacheWriter.commit();
+            closeCacheWriter();
+        }
+    }
+
+    private void playCached(byte[] payload) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        long version = buffer.getLong();
+        String songName = StandardCharsets.UTF_8.decode(buffer).toString();
+        Path file = songCache == null ? null : songCache.lookup(songName, version);
+        if (file == null) {
+            logger.error("Server expected " + songName + " to be cached but it is not");
+            return;
+        }
+
+        System.out.println("Playing " + songName + " from the cache");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WavHeader header = WavHeader.read(channel);
+            streamPlayer.start(header.toAudioFormat());
+            channel.position(header.dataOffset());
+            ByteBuffer chunk = ByteBuffer.allocate(READ_CHUNK_SIZE);
+            long remaining = header.dataLength();
+            while (remaining > 0 && channel.read(chunk.clear().limit((int) Math.min(READ_CHUNK_SIZE, remaining))) > 0) {
+                remaining -= chunk.position();
+                byte[] data = new byte[chunk.position()];
+                chunk.flip().get(data);
+                streamPlayer.write(data);
+            }
+            streamPlayer.end();
+        }
+    }
+
+    private void closeCacheWriter() throws IOException {
+        if (cacheWriter != null) {
+            cacheWriter.close();
+            cacheWriter = null;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.spotify.client;
+
+import com.spotify.protocol.Frame;
+import com.spotify.protocol.FrameReader;
+import com.spotify.protocol.Frames;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+// Reads every frame the server sends, independently of the console. Replies are printed as soon as they
+// arrive and audio is handed to a playback thread, so a playing song never holds back later replies.
+public class ReplyReader implements Runnable {
+    private static final Logger logger = LogManager.getLogger(ReplyReader.class);
+
+    private final FrameReader frameReader;
+    private final AudioReceiver audioReceiver;
+    private final int window;
+    private final Semaphore outstandingReplies;
+    private final ExecutorService playback = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "spotify-playback");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // At most window commands may be waiting for their reply at any time
+    public ReplyReader(FrameReader frameReader, AudioReceiver audioReceiver, int window) {
+        this.frameReader = frameReader;
+        this.audioReceiver = audioReceiver;
+        this.window = window;
+        this.outstandingReplies = new Semaphore(window);
+    }
+
+    // Blocks until there is room in the window for the replies of that many more commands
+    public void awaitRoomFor(int commands) throws InterruptedException {
+        outstandingReplies.acquire(commands);
+    }
+
+    public void awaitAllReplies() throws InterruptedException {
+        outstandingReplies.acquire(window);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                Frame frame = frameReader.read();
+                if (Frames.isAudio(frame.type())) {
+                    playback.execute(() -> play(frame));
+                } else {
+                    System.out.println(frame.text());
+                    outstandingReplies.release();
+                }
+            }
+        } catch (ClosedChannelException e) {
+            // the console closed the connection
+        } catch (EOFException e) {
+            System.out.println("Disconnected from the server");
+        } catch (IOException e) {
+            logger.error("There is a problem with the network communication");
+        } finally {
+            playback.shutdownNow();
+            outstandingReplies.release(window); // no more replies will come, nobody should wait for them
+        }
+    }
+
+    private void play(Frame frame) {
+        try {
+            audioReceiver.handle(frame);
+        } catch (IOException e) {
+            logger.error("Could not play the streamed song");
+        }
+    }
+}
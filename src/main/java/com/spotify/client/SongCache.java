@@ -0,0 +1,207 @@
+package com.spotify.client;
+
+import com.spotify.player.WavHeader;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// Songs streamed from the server kept on disk as WAV files named <hash of song name>-<version>.wav,
+// the least recently played ones are deleted once the cache grows over its byte budget
+public class SongCache {
+    private static final Logger logger = LogManager.getLogger(SongCache.class);
+    private static final String ENTRY_SUFFIX = ".wav";
+    private static final String PARTIAL_SUFFIX = ".part";
+    private static final char VERSION_SEPARATOR = '-';
+    private static final int HEX_RADIX = 16;
+
+    private final Path directory;
+    private final long budget;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+
+    public SongCache(Path directory, long budget) throws IOException {
+        this.directory = directory;
+        this.budget = budget;
+        Files.createDirectories(directory);
+        load();
+    }
+
+    public synchronized long version(String songName) {
+        Entry entry = entries.get(key(songName));
+        return entry == null ? -1 : entry.version;
+    }
+
+    // Returns the cached file and marks it as most recently used, or null when this version is not cached
+    public synchronized Path lookup(String songName, long version) {
+        Entry entry = entries.get(key(songName));
+        if (entry == null || entry.version != version) {
+            return null;
+        }
+        try {
+            Files.setLastModifiedTime(entry.file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            logger.error("Could not update the access time of a cached song");
+        }
+        return entry.file;
+    }
+
+    public Writer open(String songName, WavHeader header, long version) throws IOException {
+        Path partial = directory.resolve(fileName(key(songName), version) + PARTIAL_SUFFIX);
+        return new Writer(songName, version, header.dataLength(), partial, header.toFileHeader());
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    private synchronized void commit(String songName, long version, Path partial) throws IOException {
+        String key = key(songName);
+        Path file = directory.resolve(fileName(key, version) + ENTRY_SUFFIX);
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        remove(key);
+        long fileSize = Files.size(file);
+        entries.put(key, new Entry(file, version, fileSize));
+        size += fileSize;
+        evict();
+    }
+
+    private void load() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(directory)) {
+            listing.forEach(files::add);
+        }
+        List<Path> cached = new ArrayList<>();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(PARTIAL_SUFFIX)) {
+                Files.deleteIfExists(file); // left over from an interrupted stream
+            } else if (name.endsWith(ENTRY_SUFFIX) && name.indexOf(VERSION_SEPARATOR) > 0) {
+                cached.add(file);
+            }
+        }
+        cached.sort(Comparator.comparingLong(SongCache::lastModified));
+        for (Path file : cached) {
+            String name = file.getFileName().toString();
+            int separator = name.lastIndexOf(VERSION_SEPARATOR);
+            try {
+                long version = Long.parseUnsignedLong(name.substring(separator + 1, name.length() - ENTRY_SUFFIX.length()), HEX_RADIX);
+                long fileSize = Files.size(file);
+                entries.put(name.substring(0, separator), new Entry(file, version, fileSize));
+                size += fileSize;
+            } catch (NumberFormatException e) {
+                logger.error("Ignoring unknown file in the song cache " + name);
+            }
+        }
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (size > budget && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            size -= eldest.size;
+            delete(eldest.file);
+        }
+    }
+
+    private void remove(String key) {
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            size -= previous.size;
+            delete(previous.file);
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.error("Could not delete cached song " + file);
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static String key(String songName) {
+        return DigestUtils.sha256Hex(songName);
+    }
+
+    private static String fileName(String key, long version) {
+        return key + VERSION_SEPARATOR + Long.toHexString(version);
+    }
+
+    private record Entry(Path file, long version, long size) {
+    }
+
+    // Collects one streamed song, it only becomes a cache entry when every byte has been received
+    public class Writer implements AutoCloseable {
+        private final String songName;
+        private final long version;
+        private final long expectedLength;
+        private final Path partial;
+        private final FileChannel channel;
+        private long written = 0;
+        private boolean committed = false;
+
+        private Writer(String songName, long version, long expectedLength, Path partial, ByteBuffer fileHeader)
+                throws IOException {
+            this.songName = songName;
+            this.version = version;
+            this.expectedLength = expectedLength;
+            this.partial = partial;
+            this.channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            writeFully(fileHeader);
+        }
+
+        public void write(byte[] data) throws IOException {
+            writeFully(ByteBuffer.wrap(data));
+            written += data.length;
+        }
+
+        public void commit() throws IOException {
+            channel.close();
+            if (written == expectedLength) {
+                SongCache.this.commit(songName, version, partial);
+                committed = true;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+            if (!committed) {
+                Files.deleteIfExists(partial);
+            }
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
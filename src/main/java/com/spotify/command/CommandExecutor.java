@@ -1,17 +1,17 @@
 package com.spotify.command;
 
-import com.spotify.player.MusicPlayer;
+import com.spotify.player.PlaybackOffset;
+import com.spotify.player.Player;
 import com.spotify.player.Playlist;
 import com.spotify.player.Song;
-import com.spotify.storage.InMemoryStorage;
 import com.spotify.storage.Storage;
 import org.apache.commons.lang3.ArrayUtils;
 
-import java.util.Comparator;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.TreeSet;
 
 public class CommandExecutor {
     private static final String INVALID_ARGS_COUNT_MESSAGE_FORMAT =
@@ -21,6 +21,7 @@ public class CommandExecutor {
     private static final String NOT_LOGGED_IN = "You are not logged in";
     private static final String LOGIN = "login";
     private static final String REGISTER = "register";
+    private static final String RESUME = "resume";
     private static final String LOGOUT = "logout";
     private static final String DISCONNECT = "disconnect";
     private static final String SEARCH = "search";
@@ -32,21 +33,44 @@ public class CommandExecutor {
     private static final String PLAY = "play";
     private static final String STOP = "stop";
     private static final String MANUAL = "man";
+    private static final String OPTION_PREFIX = "--";
+    private static final String FROM_OPTION = "--from";
+    private static final String CACHED_OPTION = "--cached";
+    private static final String LIMIT_OPTION = "--limit";
+    private static final String CURSOR_OPTION = "--cursor";
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_SEARCH_RESULTS = 1000;
+    private static final long NO_CACHED_VERSION = -1;
+    private static final int HEX_RADIX = 16;
+    private static final String KEY_SEPARATOR = "\0";
 
     private Storage storage;
-    private final MusicPlayer musicPlayer;
+    private final Player musicPlayer;
+    private final SessionTable sessions;
+    private final ResultPages pages = new ResultPages();
     private String loggedUser = null;
+    private String sessionToken = null;
 
 
-    public CommandExecutor(InMemoryStorage storage, MusicPlayer musicPlayer) {
+    public CommandExecutor(Storage storage, Player musicPlayer) {
+        this(storage, musicPlayer, new SessionTable());
+    }
+
+    public CommandExecutor(Storage storage, Player musicPlayer, SessionTable sessions) {
         this.storage = storage;
         this.musicPlayer = musicPlayer;
+        this.sessions = sessions;
     }
 
     public String execute(Command command) {
+        return handle(command).text();
+    }
+
+    public Response handle(Command command) {
         return switch (command.command()) {
             case LOGIN -> login(command.arguments());
             case REGISTER -> register(command.arguments());
+            case RESUME -> resume(command.arguments());
             case LOGOUT -> logout();
             case DISCONNECT -> disconnect();
             case SEARCH -> search(command.arguments());
@@ -58,118 +82,207 @@ public class CommandExecutor {
             case PLAY -> play(command.arguments());
             case STOP -> stop(command.arguments());
             case MANUAL -> showManual();
-            default -> "Unknown command";
+            default -> Response.of(Status.UNKNOWN_COMMAND, "Unknown command");
+        };
+    }
+
+    // The key the reply to the command can be cached under, null for commands that change something and for
+    // invalid requests. Every song list carries the ratings, which go in the key's ratings version.
+    public ReplyKey replyKey(Command command) {
+        String[] args = command.arguments();
+        if (loggedUser == null || firstOptionIndex(args) < args.length) {
+            return null; // pages depend on the cursors of the connection
+        }
+        return switch (command.command()) {
+            case GET_TOP -> topReplyKey(args);
+            case SEARCH -> new ReplyKey(SEARCH, String.join(KEY_SEPARATOR, new TreeSet<>(Arrays.asList(args))),
+                    storage.catalogVersion(), storage.ratingsVersion());
+            case SHOW_PLAYLIST -> args.length != 1 ? null : new ReplyKey(SHOW_PLAYLIST, args[0],
+                    storage.catalogVersion() + storage.playlistVersion(args[0]), storage.ratingsVersion());
+            default -> null;
         };
     }
 
-    private String login(String[] args) {
+    private ReplyKey topReplyKey(String[] args) {
+        if (args.length != 1) {
+            return null;
+        }
+        try {
+            int topOf = Integer.parseInt(args[0]);
+            return topOf <= 0 ? null : new ReplyKey(GET_TOP, Integer.toString(topOf), storage.catalogVersion(),
+                    storage.ratingsVersion());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Response login(String[] args) {
         if (args.length != 2) {
-            return String.format(INVALID_ARGS_COUNT_MESSAGE_FORMAT, LOGIN, INVALID_ARGS_COUNT_TWO_MESSAGE_FORMAT, LOGIN + " <email> <password>");
+            return Response.of(Status.INVALID_ARGUMENTS, String.format(INVALID_ARGS_COUNT_MESSAGE_FORMAT, LOGIN, INVALID_ARGS_COUNT_TWO_MESSAGE_FORMAT, LOGIN + " <email> <password>"));
         }
 
         String email = args[0];
         String password = args[1];
 
         if (storage.doesUserExist(email, password)) {
-            loggedUser = email;
-            return String.format("User %s successfully logged in", email);
+            startSession(email, sessions.open(email));
+            return Response.ok(String.format("User %s successfully logged in, session %s", email, sessionToken));
         } else {
-            return "Invalid email/password combination";
+            return Response.of(Status.INVALID_CREDENTIALS, "Invalid email/password combination");
+        }
+    }
+
+    // Restores the session of a login made over an earlier connection, the password is not checked again
+    private Response resume(String[] args) {
+        if (args.length != 1) {
+            return Response.of(Status.INVALID_ARGUMENTS, String.format(INVALID_ARGS_COUNT_MESSAGE_FORMAT, RESUME, INVALID_ARGS_COUNT_ONE_MESSAGE_FORMAT, RESUME + " <session>"));
+        }
+
+        String token = args[0];
+        String email = sessions.resume(token);
+        if (email == null) {
+            return Response.of(Status.INVALID_CREDENTIALS, "Session expired or unknown, please login");
+        }
+        startSession(email, token);
+        return Response.ok(String.format("User %s successfully resumed session", email));
+    }
+
+    private void startSession(String email, String token) {
+        if (sessionToken != null && !sessionToken.equals(token)) {
+            sessions.close(sessionToken);
+        }
+        loggedUser = email;
+        sessionToken = token;
+    }
+
+    private void endSession() {
+        if (sessionToken != null) {
+            sessions.close(sessionToken);
         }
+        loggedUser = null;
+        sessionToken = null;
     }
 
-    private String register(String[] args) {
+    private Response register(String[] args) {
         if (args.length != 2) {
-            return String.format(INVALID_ARGS_COUNT_MESSAGE_FORMAT, REGISTER, INVALID_ARGS_COUNT_TWO_MESSAGE_FORMAT, REGISTER + " <email> <password>");
+            return Response.of(Status.INVALID_ARGUMENTS, String.format(INVALID_ARGS_COUNT_MESSAGE_FORMAT, REGISTER, INVALID_ARGS_COUNT_TWO_MESSAGE_FORMAT, REGISTER + " <email> <password>"));
         }
 
         String email = args[0];
         String password = args[1];
 
         if (storage.addUser(email, password)) {
-            return String.format("User %s successfully registered", email);
+            return Response.ok(String.format("User %s successfully registered", email));
         }
-        return String.format("Email %s is already taken, select another one", email);
+        return Response.of(Status.ALREADY_EXISTS, String.format("Email %s is already taken, select another one", email));
 
     }
 
-    private String logout() {
+    private Response logout() {
         if (loggedUser == null) {
-            return NOT_LOGGED_IN;
+            return Response.of(Status.NOT_LOGGED_IN, NOT_LOGGED_IN);
         } else {
-            loggedUser = null;
-            return "Successfully logged out";
+            endSession();
+            return Response.ok("Successfully logged out");
         }
     }
 
-    private String disconnect() {
+    private Response disconnect() {
         if (loggedUser == null) {
-            return NOT_LOGGED_IN;
+            return Response.of(Status.NOT_LOGGED_IN, NOT_LOGGED_IN);
         } else {
             storage.deleteUser(loggedUser);
-            loggedUser = null;
-            return "Successfully disconnected";
+            sessions.closeAll(loggedUser);
+            endSession();
+            return Response.ok("Successfully disconnected");
         }
 
     }
 
-    private String search(String[] args) {
+    private Response search(String[] args) {
         if (loggedUser == null) {
-            return NOT_LOGGED_IN;
-        }
-        Set<Song> searchedSongs = new HashSet<>();
-        for (String word : args) {
-            for (Song song : storage.getSongs()) {
-                if (song.getFullName().contains(word)) {
-                    searchedSongs.add(song);
-                }
-            }
+            return Response.of(Status.NOT_LOGGED_IN, NOT_LOGGED_IN);
+        }
+        int optionsIndex = firstOptionIndex(args);
+        Map<String, String> options = parseOptions(args, optionsIndex, LIMIT_OPTION, CURSOR_OPTION);
+        int limit = pageLimit(options);
+        if (limit < 0) {
+            return Response.of(Status.INVALID_ARGUMENTS, pagingUsage(SEARCH + " <words>"));
+        }
+        args = ArrayUtils.subarray(args, 0, optionsIndex);
+
+        String query = pagedQuery(SEARCH, args);
+        if (options.containsKey(CURSOR_OPTION)) {
+            ResultPages.Page page = pages.next(query, options.get(CURSOR_OPTION), limit);
+            return page == null ? unknownCursor(options) : Response.songs(page.songs(), page.cursor());
         }
-        return searchedSongs.isEmpty() ? "The are no found songs" : searchedSongs.toString();
+        List<Song> searchedSongs = storage.searchSongs(Arrays.asList(args), MAX_SEARCH_RESULTS);
+        if (searchedSongs.isEmpty()) {
+            return Response.of(Status.NOT_FOUND, "The are no found songs");
+        }
+        ResultPages.Page page = pages.first(query, ResultPages.Results.of(searchedSongs), limit);
+        return Response.songs(page.songs(), page.cursor());
     }
 
-    private String getTop(String[] args) {
+    private Response getTop(String[] args) {
+        int optionsIndex = firstOptionIndex(args);
+        Map<String, String> options = parseOptions(args, optionsIndex, LIMIT_OPTION, CURSOR_OPTION);
+        args = ArrayUtils.subarray(args, 0, optionsIndex);
         if (args.length != 1) {
-            return String.format(INVALID_ARGS_COUNT_MESSAGE_FORMAT, GET_TOP, INVALID_ARGS_COUNT_ONE_MESSAGE_FORMAT, GET_TOP + " <number>");
+            return Response.of(Status.INVALID_ARGUMENTS, String.format(INVALID_ARGS_COUNT_MESSAGE_FORMAT, GET_TOP, INVALID_ARGS_COUNT_ONE_MESSAGE_FORMAT, GET_TOP + " <number>"));
         }
         if (loggedUser == null) {
-            return NOT_LOGGED_IN;
+            return Response.of(Status.NOT_LOGGED_IN, NOT_LOGGED_IN);
+        }
+        int limit = pageLimit(options);
+        if (limit < 0) {
+            return Response.of(Status.INVALID_ARGUMENTS, pagingUsage(GET_TOP + " <number>"));
         }
         int topOf;
         try {
             topOf = Integer.parseInt(args[0]);
         } catch (NumberFormatException e) {
-            return "Please insert a valid number";
+            return Response.of(Status.INVALID_ARGUMENTS, "Please insert a valid number");
         }
         if (topOf <= 0) {
-            return "Please insert positive number";
+            return Response.of(Status.INVALID_ARGUMENTS, "Please insert positive number");
+        }
+
+        String query = pagedQuery(GET_TOP, new String[]{Integer.toString(topOf)});
+        if (options.containsKey(CURSOR_OPTION)) {
+            ResultPages.Page page = pages.next(query, options.get(CURSOR_OPTION), limit);
+            return page == null ? unknownCursor(options) : Response.songs(page.songs(), page.cursor());
         }
-        List<Song> topSongs = storage.getSongs().stream()
-                .sorted(Comparator.comparingInt(Song::getRating).reversed())
-                .limit(topOf)
-                .collect(Collectors.toList());
-        return topSongs.isEmpty() ? "There are no songs" : topSongs.toString();
+        List<Song> topSongs = storage.getTopSongs(topOf);
+        if (topSongs.isEmpty()) {
+            return Response.of(Status.NOT_FOUND, "There are no songs");
+        }
+        ResultPages.Page page = pages.first(query, ResultPages.Results.of(topSongs), limit);
+        return Response.songs(page.songs(), page.cursor());
     }
 
-    private String createPlaylist(String[] args) {
+    private Response createPlaylist(String[] args) {
         if (args.length != 1) {
-            return String.format(INVALID_ARGS_COUNT_MESSAGE_FORMAT, CREATE_PLAYLIST, INVALID_ARGS_COUNT_ONE_MESSAGE_FORMAT, CREATE_PLAYLIST + " <playlistName>");
+            return Response.of(Status.INVALID_ARGUMENTS, String.format(INVALID_ARGS_COUNT_MESSAGE_FORMAT, CREATE_PLAYLIST, INVALID_ARGS_COUNT_ONE_MESSAGE_FORMAT, CREATE_PLAYLIST + " <playlistName>"));
         }
         if (loggedUser == null) {
-            return NOT_LOGGED_IN;
+            return Response.of(Status.NOT_LOGGED_IN, NOT_LOGGED_IN);
         }
 
         String playlistName = args[0];
         Playlist playlist = new Playlist(playlistName);
         if (storage.addPlaylist(playlist)) {
-            return String.format("Playlist %s successfully created", playlistName);
+            return Response.ok(String.format("Playlist %s successfully created", playlistName));
         }
-        return String.format("Playlist %s is already existing", playlistName);
+        return Response.of(Status.ALREADY_EXISTS, String.format("Playlist %s is already existing", playlistName));
     }
 
-    private String addSongTo(String[] args) {
+    private Response addSongTo(String[] args) {
+        if (args.length < 2) {
+            return Response.of(Status.INVALID_ARGUMENTS, String.format(INVALID_ARGS_COUNT_MESSAGE_FORMAT, ADD_SONG_TO, INVALID_ARGS_COUNT_TWO_MESSAGE_FORMAT, ADD_SONG_TO + " <playlistName> <song>"));
+        }
         if (loggedUser == null) {
-            return NOT_LOGGED_IN;
+            return Response.of(Status.NOT_LOGGED_IN, NOT_LOGGED_IN);
         }
 
         String playlistName = args[0];
@@ -177,103 +290,197 @@ public class CommandExecutor {
         String songFullName = String.join(" ", args);
         Song song = storage.getSongByFullName(songFullName);
         if (song == null) {
-            return String.format("There is no song with name %s", songFullName);
+            return Response.of(Status.NOT_FOUND, String.format("There is no song with name %s", songFullName));
         }
         Playlist playlist = storage.getPlaylistByName(playlistName);
         if (playlist == null) {
-            return String.format("There is no playlist with name %s", playlistName);
+            return Response.of(Status.NOT_FOUND, String.format("There is no playlist with name %s", playlistName));
         }
         if (storage.addSongToPlaylist(playlist, song)) {
-            return String.format("Song %s successfully added to playlist %s", songFullName, playlistName);
+            return Response.ok(String.format("Song %s successfully added to playlist %s", songFullName, playlistName));
         }
-        return String.format("Song %s is already in playlist %s", songFullName, playlistName);
+        return Response.of(Status.ALREADY_EXISTS, String.format("Song %s is already in playlist %s", songFullName, playlistName));
 
     }
 
-    private String showPlaylist(String[] args) {
+    private Response showPlaylist(String[] args) {
+        int optionsIndex = firstOptionIndex(args);
+        Map<String, String> options = parseOptions(args, optionsIndex, LIMIT_OPTION, CURSOR_OPTION);
+        args = ArrayUtils.subarray(args, 0, optionsIndex);
         if (args.length != 1) {
-            return String.format(INVALID_ARGS_COUNT_MESSAGE_FORMAT, SHOW_PLAYLIST, 1, SHOW_PLAYLIST + " <playlistName>");
+            return Response.of(Status.INVALID_ARGUMENTS, String.format(INVALID_ARGS_COUNT_MESSAGE_FORMAT, SHOW_PLAYLIST, 1, SHOW_PLAYLIST + " <playlistName>"));
         }
         if (loggedUser == null) {
-            return NOT_LOGGED_IN;
+            return Response.of(Status.NOT_LOGGED_IN, NOT_LOGGED_IN);
+        }
+        int limit = pageLimit(options);
+        if (limit < 0) {
+            return Response.of(Status.INVALID_ARGUMENTS, pagingUsage(SHOW_PLAYLIST + " <playlistName>"));
         }
 
         String playlistName = args[0];
+        String query = pagedQuery(SHOW_PLAYLIST, args);
+        if (options.containsKey(CURSOR_OPTION)) {
+            ResultPages.Page page = pages.next(query, options.get(CURSOR_OPTION), limit);
+            return page == null ? unknownCursor(options) : Response.playlist(playlistName, page.songs(), page.cursor());
+        }
         Playlist playlist = storage.getPlaylistByName(playlistName);
         if (playlist == null) {
-            return String.format("There is no playlist %s", playlistName);
+            return Response.of(Status.NOT_FOUND, String.format("There is no playlist %s", playlistName));
         }
-        if (playlist.getSongs().isEmpty()) {
-            return String.format("There are no songs in playlist %s", playlistName);
+        ResultPages.Page page = pages.first(query, ResultPages.Results.of(playlist), limit);
+        if (page.songs().isEmpty() && page.cursor() == null) {
+            return Response.of(Status.NOT_FOUND, String.format("There are no songs in playlist %s", playlistName));
         }
-        return playlist.toString();
+        return Response.playlist(playlistName, page.songs(), page.cursor());
     }
 
-    private String playPlaylist(String[] args) {
+    private Response playPlaylist(String[] args) {
         if (args.length != 1) {
-            return String.format(INVALID_ARGS_COUNT_MESSAGE_FORMAT, PLAY_PLAYLIST, 1, PLAY_PLAYLIST + " <playlistName>");
+            return Response.of(Status.INVALID_ARGUMENTS, String.format(INVALID_ARGS_COUNT_MESSAGE_FORMAT, PLAY_PLAYLIST, 1, PLAY_PLAYLIST + " <playlistName>"));
         }
         if (loggedUser == null) {
-            return NOT_LOGGED_IN;
+            return Response.of(Status.NOT_LOGGED_IN, NOT_LOGGED_IN);
         }
 
         String playlistName = args[0];
         Playlist playlist = storage.getPlaylistByName(playlistName);
         if (playlist == null) {
-            return String.format("There are no playlist with name %s", playlistName);
+            return Response.of(Status.NOT_FOUND, String.format("There are no playlist with name %s", playlistName));
         }
         if (playlist.getSongs().isEmpty()) {
-            return String.format("There are no songs in playlist %s", playlistName);
+            return Response.of(Status.NOT_FOUND, String.format("There are no songs in playlist %s", playlistName));
         }
         for (Song song : playlist.getSongs()) {
-            musicPlayer.play(song);
+            musicPlayer.play(song, PlaybackOffset.START);
         }
-        return String.format("Playlist %s was successfully played", playlistName);
+        return Response.ok(String.format("Playlist %s was successfully played", playlistName));
     }
 
-    private String play(String[] args) {
+    private Response play(String[] args) {
         if (loggedUser == null) {
-            return NOT_LOGGED_IN;
+            return Response.of(Status.NOT_LOGGED_IN, NOT_LOGGED_IN);
+        }
+
+        int optionsIndex = firstOptionIndex(args);
+        Map<String, String> options = parseOptions(args, optionsIndex, FROM_OPTION, CACHED_OPTION);
+        if (options == null) {
+            return Response.of(Status.INVALID_ARGUMENTS, "Usage: " + PLAY + " <song> [" + FROM_OPTION + " <mm:ss|byte>] [" + CACHED_OPTION + " <version>]");
+        }
+        args = ArrayUtils.subarray(args, 0, optionsIndex);
+
+        PlaybackOffset from = PlaybackOffset.START;
+        if (options.containsKey(FROM_OPTION)) {
+            try {
+                from = PlaybackOffset.parse(options.get(FROM_OPTION));
+            } catch (IllegalArgumentException e) {
+                return Response.of(Status.INVALID_ARGUMENTS, String.format("Invalid start position %s, use mm:ss or a byte offset", options.get(FROM_OPTION)));
+            }
+        }
+        long cachedVersion = NO_CACHED_VERSION;
+        if (options.containsKey(CACHED_OPTION)) {
+            try {
+                cachedVersion = Long.parseUnsignedLong(options.get(CACHED_OPTION), HEX_RADIX);
+            } catch (NumberFormatException e) {
+                return Response.of(Status.INVALID_ARGUMENTS, String.format("Invalid cached version %s", options.get(CACHED_OPTION)));
+            }
         }
 
         String songFullName = String.join(" ", args);
         Song song = storage.getSongByFullName(songFullName);
         if (song == null) {
-            return String.format("There is no song %s", songFullName);
+            return Response.of(Status.NOT_FOUND, String.format("There is no song %s", songFullName));
+        }
+        if (from.isStart()) { // resuming or skipping ahead is not counted as another listen
+            storage.updateSongRating(song);
+        }
+        if (!musicPlayer.play(song, from, cachedVersion)) {
+            return Response.of(Status.FAILED, String.format("Could not play song %s", songFullName));
         }
-        storage.updateSongRating(song);
-        musicPlayer.play(song);
-        return String.format("Song %s was successfully played", songFullName);
+        return Response.ok(String.format("Song %s was successfully played", songFullName));
     }
 
-    private String stop(String[] args) {
+    private Response stop(String[] args) {
         if (loggedUser == null) {
-            return NOT_LOGGED_IN;
+            return Response.of(Status.NOT_LOGGED_IN, NOT_LOGGED_IN);
+        }
+        if (!musicPlayer.stop()) {
+            return Response.of(Status.FAILED, "There is not song playing");
+        }
+        return Response.ok("Music player successfully stopped");
+    }
+
+    // The page size asked for with --limit, or the default; -1 when the options or the limit are not valid
+    private static int pageLimit(Map<String, String> options) {
+        if (options == null) {
+            return -1;
+        }
+        if (!options.containsKey(LIMIT_OPTION)) {
+            return MAX_PAGE_SIZE;
         }
         try {
-            musicPlayer.stop();
-        } catch(NullPointerException e) {
-            return "There is not song playing";
+            int limit = Integer.parseInt(options.get(LIMIT_OPTION));
+            return limit > 0 && limit <= MAX_PAGE_SIZE ? limit : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String pagingUsage(String command) {
+        return "Usage: " + command + " [" + LIMIT_OPTION + " <1-" + MAX_PAGE_SIZE + ">] [" + CURSOR_OPTION + " <cursor>]";
+    }
+
+    private static Response unknownCursor(Map<String, String> options) {
+        return Response.of(Status.INVALID_ARGUMENTS, String.format("Unknown or expired cursor %s", options.get(CURSOR_OPTION)));
+    }
+
+    // Cursors are only valid for the query they were made for
+    private static String pagedQuery(String command, String[] args) {
+        return command + KEY_SEPARATOR + String.join(KEY_SEPARATOR, args);
+    }
+
+    private static int firstOptionIndex(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith(OPTION_PREFIX)) {
+                return i;
+            }
+        }
+        return args.length;
+    }
+
+    // Reads "--name value" pairs from the given index on, returns null when they are malformed or unknown
+    private static Map<String, String> parseOptions(String[] args, int from, String... allowedOptions) {
+        if ((args.length - from) % 2 != 0) {
+            return null;
+        }
+        Map<String, String> options = new HashMap<>();
+        for (int i = from; i < args.length; i += 2) {
+            if (!ArrayUtils.contains(allowedOptions, args[i])) {
+                return null;
+            }
+            options.put(args[i], args[i + 1]);
         }
-        return "Music player successfully stopped";
+        return options;
     }
 
-    private String showManual() {
-        return """
+    private Response showManual() {
+        return Response.ok("""
                 Spotify manual
                 Available commands
                 register(email, password) - register new client
                 login(email, password) - login existing client
+                resume(session) - continue the session of a login after reconnecting
                 disconnect() - disconnect a client from server
-                search(words) - search for songs by keywords
-                top(number) - print the (number) most listened songs
+                search(words [--limit n] [--cursor c]) - search for songs by keywords, best matches first
+                top(number [--limit n] [--cursor c]) - print the (number) most listened songs
                 create-playlist(name_of_playlist, song_name) - create new playlist
-                show-playlist(name_of_playlist) - print songs of playlist
-                play(song_name) - play song
+                show-playlist(name_of_playlist [--limit n] [--cursor c]) - print songs of playlist
+                results longer than a page end with the cursor of the next page
+                play(song_name [--from mm:ss|byte]) - play song, optionally from a position
                 play-playlist(name_of_playlist) - play playlist
                 stop() - stop playing song
                 exit() - to exit
-                """;
+                """);
     }
 
 }
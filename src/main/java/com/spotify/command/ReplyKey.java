@@ -0,0 +1,7 @@
+package com.spotify.command;
+
+// Identifies the reply of a read-only command: equal keys get equal replies as long as the version,
+// which is built from the storage change counters the reply depends on, stays the same. The ratings
+// version is kept apart, since every play changes it and a reply may show ratings a moment old.
+public record ReplyKey(String command, String arguments, long version, long ratingsVersion) {
+}
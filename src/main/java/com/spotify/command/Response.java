@@ -0,0 +1,46 @@
+package com.spotify.command;
+
+import com.spotify.player.Playlist;
+import com.spotify.player.Song;
+
+import java.util.Collection;
+
+// Keeps the result structured so that each protocol can render it in its own format. A reply that holds
+// one page of a longer result carries the cursor of the next page.
+public record Response(Status status, String message, Collection<Song> songs, String playlistName, String cursor) {
+    public static Response of(Status status, String message) {
+        return new Response(status, message, null, null, null);
+    }
+
+    public static Response ok(String message) {
+        return of(Status.OK, message);
+    }
+
+    public static Response songs(Collection<Song> songs) {
+        return songs(songs, null);
+    }
+
+    public static Response songs(Collection<Song> songs, String cursor) {
+        return new Response(Status.OK, null, songs, null, cursor);
+    }
+
+    public static Response playlist(Playlist playlist) {
+        return playlist(playlist.getName(), playlist.getSongs(), null);
+    }
+
+    public static Response playlist(String playlistName, Collection<Song> songs, String cursor) {
+        return new Response(Status.OK, null, songs, playlistName, cursor);
+    }
+
+    public String text() {
+        String text;
+        if (playlistName != null) {
+            text = "Playlist{name='" + playlistName + "', songs=" + songs + '}';
+        } else if (songs != null) {
+            text = songs.toString();
+        } else {
+            text = message;
+        }
+        return cursor == null ? text : text + "\nNext page: --cursor " + cursor;
+    }
+}
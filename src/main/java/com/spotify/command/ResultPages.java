@@ -0,0 +1,107 @@
+package com.spotify.command;
+
+import com.spotify.player.Playlist;
+import com.spotify.player.Song;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Paged results of one connection. The first page of a result that does not fit keeps a snapshot of it, and
+// the cursor of every further page names that snapshot and the position of the page in it, so a page is cut
+// from the snapshot instead of running the query again and asking for a page twice gives the same page.
+// Only the most recently used snapshots are kept.
+class ResultPages {
+    private static final int MAX_SNAPSHOTS = 8;
+    private static final int CURSOR_RADIX = 36;
+    private static final char CURSOR_SEPARATOR = '-';
+
+    private final Map<Long, Snapshot> snapshots = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Snapshot> eldest) {
+            return size() > MAX_SNAPSHOTS;
+        }
+    };
+    private long nextId = ThreadLocalRandom.current().nextLong(Long.MAX_VALUE / 2);
+
+    interface Results {
+        int size();
+
+        List<Song> get(int from, int count);
+
+        static Results of(List<Song> songs) {
+            return new Results() {
+                @Override
+                public int size() {
+                    return songs.size();
+                }
+
+                @Override
+                public List<Song> get(int from, int count) {
+                    return List.copyOf(songs.subList(from, Math.min(songs.size(), from + count)));
+                }
+            };
+        }
+
+        // Songs are only ever added to a playlist, so positions stay valid while later pages are read
+        static Results of(Playlist playlist) {
+            return new Results() {
+                @Override
+                public int size() {
+                    return playlist.size();
+                }
+
+                @Override
+                public List<Song> get(int from, int count) {
+                    return playlist.getSongs(from, count);
+                }
+            };
+        }
+    }
+
+    record Page(List<Song> songs, String cursor) {
+    }
+
+    private record Snapshot(String query, Results results, int size) {
+    }
+
+    Page first(String query, Results results, int limit) {
+        int size = results.size();
+        if (size <= limit) {
+            return new Page(results.get(0, size), null);
+        }
+        long id = nextId++;
+        snapshots.put(id, new Snapshot(query, results, size));
+        return page(id, snapshots.get(id), 0, limit);
+    }
+
+    // Null when the cursor is malformed, its snapshot was dropped or it belongs to another query
+    Page next(String query, String cursor, int limit) {
+        int separator = cursor.indexOf(CURSOR_SEPARATOR);
+        if (separator < 0) {
+            return null;
+        }
+        long id;
+        int from;
+        try {
+            id = Long.parseLong(cursor.substring(0, separator), CURSOR_RADIX);
+            from = Integer.parseInt(cursor.substring(separator + 1), CURSOR_RADIX);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        Snapshot snapshot = snapshots.get(id);
+        if (snapshot == null || !snapshot.query().equals(query) || from < 0 || from > snapshot.size()) {
+            return null;
+        }
+        return page(id, snapshot, from, limit);
+    }
+
+    private static Page page(long id, Snapshot snapshot, int from, int limit) {
+        int next = (int) Math.min(snapshot.size(), (long) from + limit);
+        String cursor = next < snapshot.size()
+                ? Long.toString(id, CURSOR_RADIX) + CURSOR_SEPARATOR + Integer.toString(next, CURSOR_RADIX)
+                : null;
+        return new Page(snapshot.results().get(from, next - from), cursor);
+    }
+}
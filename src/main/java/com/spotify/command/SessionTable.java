@@ -0,0 +1,66 @@
+package com.spotify.command;
+
+import org.apache.commons.codec.binary.Hex;
+
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+// Sessions of logged in users, shared by all connections. A login opens a session under a random token,
+// and a client that lost its connection resumes it with that token: one lookup, without hashing the
+// password again. A session expires when it was not used for ttl; expired sessions are removed when they
+// are looked up and by a sweep that runs at most once per ttl.
+public class SessionTable {
+    private static final long DEFAULT_TTL_MILLIS = 30 * 60 * 1000;
+    private static final int TOKEN_BYTES = 16;
+
+    private final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private volatile long nextSweep;
+
+    private record Session(String email, long expiresAt) {
+    }
+
+    public SessionTable() {
+        this(DEFAULT_TTL_MILLIS, System::currentTimeMillis);
+    }
+
+    SessionTable(long ttlMillis, LongSupplier clock) {
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.nextSweep = clock.getAsLong() + ttlMillis;
+    }
+
+    public String open(String email) {
+        long now = clock.getAsLong();
+        if (now >= nextSweep) {
+            nextSweep = now + ttlMillis;
+            sessions.values().removeIf(session -> session.expiresAt() <= now);
+        }
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Hex.encodeHexString(bytes);
+        sessions.put(token, new Session(email, now + ttlMillis));
+        return token;
+    }
+
+    // The email of the session, which stays alive for another ttl, or null when there is no such session
+    public String resume(String token) {
+        long now = clock.getAsLong();
+        Session session = sessions.computeIfPresent(token, (key, current) ->
+                current.expiresAt() <= now ? null : new Session(current.email(), now + ttlMillis));
+        return session == null ? null : session.email();
+    }
+
+    public void close(String token) {
+        sessions.remove(token);
+    }
+
+    // Ends every session of a user whose account is gone, which is rare enough to scan for
+    public void closeAll(String email) {
+        sessions.values().removeIf(session -> session.email().equals(email));
+    }
+}
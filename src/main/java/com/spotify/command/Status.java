@@ -0,0 +1,31 @@
+package com.spotify.command;
+
+public enum Status {
+    OK(0),
+    UNKNOWN_COMMAND(1),
+    INVALID_ARGUMENTS(2),
+    NOT_LOGGED_IN(3),
+    INVALID_CREDENTIALS(4),
+    NOT_FOUND(5),
+    ALREADY_EXISTS(6),
+    FAILED(7);
+
+    private final int code;
+
+    Status(int code) {
+        this.code = code;
+    }
+
+    public int code() {
+        return code;
+    }
+
+    public static Status fromCode(int code) {
+        for (Status status : values()) {
+            if (status.code == code) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Unknown status code " + code);
+    }
+}
@@ -0,0 +1,43 @@
+package com.spotify.player;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Every distinct singer name is kept once, songs refer to their singers by id. Lookups do not lock; a new
+// name is stored in the array before its id is published through the map.
+final class Artists {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[INITIAL_CAPACITY];
+    private static int count = 0;
+
+    private Artists() {
+    }
+
+    static int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (Artists.class) {
+            id = ids.get(name);
+            if (id != null) {
+                return id;
+            }
+            String[] current = names;
+            if (count == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+                names = current;
+            }
+            current[count] = name;
+            ids.put(name, count);
+            return count++;
+        }
+    }
+
+    static String name(int id) {
+        return names[id];
+    }
+}
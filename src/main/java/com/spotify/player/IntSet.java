@@ -0,0 +1,65 @@
+package com.spotify.player;
+
+import java.util.Arrays;
+
+// A set of non-negative ints in one open addressing array, without boxing. Not thread safe.
+class IntSet {
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int FREE = -1;
+
+    private int[] slots = newSlots(INITIAL_CAPACITY);
+    private int size = 0;
+
+    boolean contains(int value) {
+        int mask = slots.length - 1;
+        for (int slot = home(value, mask); slots[slot] != FREE; slot = (slot + 1) & mask) {
+            if (slots[slot] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Returns false when the value was already in the set
+    boolean add(int value) {
+        if (contains(value)) {
+            return false;
+        }
+        if ((size + 1) * 2 > slots.length) {
+            int[] old = slots;
+            slots = newSlots(old.length * 2);
+            for (int oldValue : old) {
+                if (oldValue != FREE) {
+                    place(oldValue);
+                }
+            }
+        }
+        place(value);
+        size++;
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void place(int value) {
+        int mask = slots.length - 1;
+        int slot = home(value, mask);
+        while (slots[slot] != FREE) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = value;
+    }
+
+    private static int home(int value, int mask) {
+        int hash = value * 0x9E3779B9; // spreads consecutive ids over the whole table
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static int[] newSlots(int capacity) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, FREE);
+        return slots;
+    }
+}
@@ -13,7 +13,7 @@ import javax.sound.sampled.UnsupportedAudioFileException;
 import java.io.File;
 import java.io.IOException;
 
-public class MusicPlayer implements Runnable {
+public class MusicPlayer implements Player, Runnable {
     private static final Logger logger = LogManager.getLogger(MusicPlayer.class);
     private static final int BUFFER_SIZE = 128_000;
 
@@ -23,17 +23,26 @@ public class MusicPlayer implements Runnable {
     private SourceDataLine sourceDataLine;
     private volatile boolean running = true;
     private Song song = new Song("Ujen Vqtar", "Bataliona");
+    private PlaybackOffset from = PlaybackOffset.START;
 
-    public synchronized void play(Song song) {
+    @Override
+    public synchronized boolean play(Song song, PlaybackOffset from) {
         this.song = song;
+        this.from = from;
         this.running = true;
         new Thread(this).start();
+        return true;
     }
 
-    public void stop() {
+    @Override
+    public boolean stop() {
+        if (sourceDataLine == null) {
+            return false;
+        }
         this.running = false;
         sourceDataLine.drain();
         sourceDataLine.stop();
+        return true;
     }
 
     @Override
@@ -49,6 +58,7 @@ public class MusicPlayer implements Runnable {
                     sourceDataLine = (SourceDataLine) AudioSystem.getLine(info);
                     sourceDataLine.open(audioFormat);
                     sourceDataLine.start();
+                    skipTo(from);
                     byte[] bytesBuffer = new byte[BUFFER_SIZE];
                     int bytesRead = -1;
                     while (running && (bytesRead = audioInputStream.read(bytesBuffer)) != -1) {
@@ -73,4 +83,17 @@ public class MusicPlayer implements Runnable {
             }
         }
     }
+
+    private void skipTo(PlaybackOffset from) throws IOException {
+        long bytes = from.isTime()
+                ? (long) (from.value() / 1000.0 * audioFormat.getFrameRate()) * audioFormat.getFrameSize()
+                : from.value() - from.value() % audioFormat.getFrameSize();
+        while (bytes > 0) {
+            long skipped = audioInputStream.skip(bytes);
+            if (skipped <= 0) {
+                break;
+            }
+            bytes -= skipped;
+        }
+    }
 }
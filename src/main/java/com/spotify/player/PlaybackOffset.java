@@ -0,0 +1,47 @@
+package com.spotify.player;
+
+// Where playback of a song starts: either a time offset in milliseconds or a raw offset into the PCM data
+public record PlaybackOffset(long value, boolean isTime) {
+    public static final PlaybackOffset START = new PlaybackOffset(0, false);
+
+    private static final long MILLIS_PER_SECOND = 1000;
+    private static final long SECONDS_PER_MINUTE = 60;
+
+    public PlaybackOffset {
+        if (value < 0) {
+            throw new IllegalArgumentException("Playback offset cannot be negative");
+        }
+    }
+
+    // Accepts "mm:ss" or a byte offset
+    public static PlaybackOffset parse(String text) {
+        try {
+            int separator = text.indexOf(':');
+            if (separator < 0) {
+                return new PlaybackOffset(Long.parseLong(text), false);
+            }
+            long minutes = Long.parseLong(text.substring(0, separator));
+            long seconds = Long.parseLong(text.substring(separator + 1));
+            if (seconds >= SECONDS_PER_MINUTE || seconds < 0) {
+                throw new IllegalArgumentException("Seconds must be between 0 and 59");
+            }
+            return new PlaybackOffset((minutes * SECONDS_PER_MINUTE + seconds) * MILLIS_PER_SECOND, true);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid playback offset " + text, e);
+        }
+    }
+
+    public boolean isStart() {
+        return value == 0;
+    }
+
+    // Offset into the PCM data, rounded down to a whole frame and capped at the end of the song
+    public long toDataOffset(WavHeader header) {
+        long bytes = isTime
+                ? value * header.sampleRate() / MILLIS_PER_SECOND * header.blockAlign()
+                : value;
+        long aligned = bytes - bytes % header.blockAlign();
+        long lastFrame = header.dataLength() - header.dataLength() % header.blockAlign();
+        return Math.min(aligned, lastFrame);
+    }
+}
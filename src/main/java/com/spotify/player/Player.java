@@ -0,0 +1,13 @@
+package com.spotify.player;
+
+public interface Player {
+    boolean play(Song song, PlaybackOffset from);
+
+    // Players that send the song to a client can skip the transfer when the client already has this version
+    default boolean play(Song song, PlaybackOffset from, long cachedVersion) {
+        return play(song, from);
+    }
+
+    // Returns false when there was nothing to stop
+    boolean stop();
+}
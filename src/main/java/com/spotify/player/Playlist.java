@@ -1,35 +1,148 @@
 package com.spotify.player;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serial;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
+// A playlist keeps its songs as ids of a SongDictionary, in the order they were added, and resolves them to
+// the dictionary's shared Song instances when they are read, so an entry costs a few bytes instead of a
+// Song. Stored playlists use the song catalog as dictionary; a playlist created without one gets its own.
+// Adding is serialized on the playlist, reads do not lock: a new id is written before the size that
+// publishes it, and the id array is only replaced by a larger copy.
 public class Playlist implements Serializable {
     @Serial
     private static final long serialVersionUID = 1234L;
+    // the serialized form of older versions, which held the songs themselves
+    @Serial
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("name", String.class),
+            new ObjectStreamField("songs", Set.class)
+    };
+    private static final int INITIAL_CAPACITY = 4;
+
     private final String name;
-    private Set<Song> songs = new HashSet<>();
+    private final transient SongDictionary dictionary;
+    private final transient IntSet members = new IntSet();
+    private transient volatile int[] songIds = new int[INITIAL_CAPACITY];
+    private transient volatile int size = 0;
+    private transient Playlist deserialized;
 
     public Playlist(String name) {
+        this(name, new OwnSongs());
+    }
+
+    public Playlist(String name, SongDictionary dictionary) {
         this.name = name;
+        this.dictionary = dictionary;
+    }
+
+    // Ids that the dictionary does not resolve are skipped when the songs are read
+    public Playlist(String name, SongDictionary dictionary, int[] songIds) {
+        this(name, dictionary);
+        for (int id : songIds) {
+            addSongId(id);
+        }
     }
 
     public String getName() {
         return name;
     }
 
-    public Set<Song> getSongs() {
+    public List<Song> getSongs() {
+        return getSongs(0, Integer.MAX_VALUE);
+    }
+
+    // The songs at positions from to from + count - 1, only those are resolved
+    public List<Song> getSongs(int from, int count) {
+        int end = (int) Math.min(size, (long) from + count); // read before the ids, which hold at least size
+        int[] ids = songIds;
+        List<Song> songs = new ArrayList<>(Math.max(end - from, 0));
+        for (int i = from; i < end; i++) {
+            Song song = dictionary.song(ids[i]);
+            if (song != null) {
+                songs.add(song);
+            }
+        }
         return songs;
     }
 
-    public boolean addSong(Song song) {
-        if (!songs.contains(song)) {
-            songs.add(song);
-            return true;
+    public synchronized boolean addSong(Song song) {
+        int id = dictionary.idOf(song);
+        return id != SongDictionary.UNKNOWN && addSongId(id);
+    }
+
+    // The ids of the songs in another dictionary, a copy of the playlist's own ids when it is the same one
+    public int[] songIds(SongDictionary target) {
+        int count = size;
+        int[] ids = Arrays.copyOf(songIds, count);
+        if (target == dictionary) {
+            return ids;
+        }
+        return Arrays.stream(ids)
+                .mapToObj(dictionary::song)
+                .filter(Objects::nonNull)
+                .mapToInt(target::idOf)
+                .filter(id -> id != SongDictionary.UNKNOWN)
+                .toArray();
+    }
+
+    // Counts songs the dictionary no longer resolves as well
+    public int size() {
+        return size;
+    }
+
+    public boolean usesDictionary(SongDictionary other) {
+        return dictionary == other;
+    }
+
+    private synchronized boolean addSongId(int id) {
+        if (!members.add(id)) {
+            return false;
+        }
+        int[] ids = songIds;
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, ids.length * 2);
+            songIds = ids;
+        }
+        ids[size] = id;
+        size = size + 1;
+        return true;
+    }
+
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("name", name);
+        fields.put("songs", new HashSet<>(getSongs()));
+        out.writeFields();
+    }
+
+    // Fields of a Serializable class are not initialized on deserialization, so a new playlist replaces this one
+    @Serial
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        deserialized = new Playlist((String) fields.get("name", null));
+        Set<Song> songs = (Set<Song>) fields.get("songs", null);
+        if (songs != null) {
+            songs.forEach(deserialized::addSong);
         }
-        return false;
+    }
+
+    @Serial
+    private Object readResolve() {
+        return deserialized;
     }
 
     @Override
@@ -37,19 +150,38 @@ public class Playlist implements Serializable {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Playlist playlist = (Playlist) o;
-        return Objects.equals(name, playlist.name) && Objects.equals(songs, playlist.songs);
+        return Objects.equals(name, playlist.name) && Objects.equals(getSongs(), playlist.getSongs());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(name, songs);
+        return Objects.hash(name, getSongs());
     }
 
     @Override
     public String toString() {
         return "Playlist{" +
                 "name='" + name + '\'' +
-                ", songs=" + songs +
+                ", songs=" + getSongs() +
                 '}';
     }
+
+    // The dictionary of a playlist that is not stored: ids are handed out in the order songs are added
+    private static class OwnSongs implements SongDictionary {
+        private final Map<Song, Integer> ids = new HashMap<>();
+        private final List<Song> songs = new ArrayList<>();
+
+        @Override
+        public synchronized int idOf(Song song) {
+            return ids.computeIfAbsent(song, key -> {
+                songs.add(key);
+                return songs.size() - 1;
+            });
+        }
+
+        @Override
+        public synchronized Song song(int id) {
+            return id >= 0 && id < songs.size() ? songs.get(id) : null;
+        }
+    }
 }
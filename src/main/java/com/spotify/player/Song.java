@@ -1,43 +1,71 @@
 package com.spotify.player;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serial;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
+// A song is its full name, the ids of its singers in the shared artist table and its rating. The song
+// name, the singer names and the file are derived when asked for, and the hash is computed once, so a
+// song costs little more than its full name and set operations do not rehash any strings.
 public class Song implements Serializable {
     @Serial
     private static final long serialVersionUID = 1234L;
+    // the serialized form of older versions, which ratings and playlist files may still hold
+    @Serial
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("songName", String.class),
+            new ObjectStreamField("singersNames", Set.class),
+            new ObjectStreamField("songFile", File.class),
+            new ObjectStreamField("fullName", String.class),
+            new ObjectStreamField("rating", int.class)
+    };
     private final static String SONGS_DIR = "src/main/resources/Songs/";
+    private static final String SINGERS_SEPARATOR = " ft. ";
+    private static final String NAME_SEPARATOR = " - ";
+    private static final String FILE_EXTENSION = ".wav";
+    // an updater instead of an AtomicInteger field keeps the rating a plain int
+    private static final AtomicIntegerFieldUpdater<Song> RATING = AtomicIntegerFieldUpdater.newUpdater(Song.class, "rating");
 
-    private final String songName;
-    private Set<String> singersNames = new HashSet<>();
-    private final File songFile;
-    private final String fullName;
-    private int rating = 0;
+    // not final only so that readObject can set them
+    private String fullName;
+    private int songNameStart;
+    private int[] singers;
+    private int hash;
+    private volatile int rating = 0;
 
     public Song(String singersNames, String songName) {
-        setSingersNames(singersNames);
-        this.songName = songName;
-        this.songFile = new File(SONGS_DIR + singersNames + " - " + songName + ".wav");
-        this.fullName = singersNames + " - " + songName;
+        init(singersNames, songName);
     }
 
-    public Song(String singersNames, String songName, int rating) { // Needed for testing purpose
+    public Song(String singersNames, String songName, int rating) {
         this(singersNames, songName);
         this.rating = rating;
     }
 
-    private void setSingersNames(String singers) {
-        String[] names = singers.split(" ft. ");
-        this.singersNames.addAll(Arrays.asList(names));
+    private void init(String singersNames, String songName) {
+        this.fullName = singersNames + NAME_SEPARATOR + songName;
+        this.songNameStart = singersNames.length() + NAME_SEPARATOR.length();
+        this.singers = Arrays.stream(singersNames.split(SINGERS_SEPARATOR))
+                .distinct()
+                .mapToInt(Artists::intern)
+                .toArray();
+        // the value the hash of earlier versions had, so sets of songs keep iterating in the same order
+        this.hash = Objects.hash(songName, getSingersNames(), getSongFile());
     }
 
-    public void incrementRating() {
-        rating++;
+    public int incrementRating() {
+        return RATING.incrementAndGet(this);
     }
 
     public int getRating() {
@@ -45,39 +73,71 @@ public class Song implements Serializable {
     }
 
     public String getSongName() {
-        return songName;
+        return fullName.substring(songNameStart);
+    }
+
+    // Index in the full name where the song name begins, after the singers and the separator
+    public int getSongNameStart() {
+        return songNameStart;
     }
 
     public Set<String> getSingersNames() {
-        return singersNames;
+        Set<String> names = new LinkedHashSet<>();
+        for (int singer : singers) {
+            names.add(Artists.name(singer));
+        }
+        return names;
     }
 
     public File getSongFile() {
-        return songFile;
+        return new File(SONGS_DIR + fullName + FILE_EXTENSION);
     }
 
     public String getFullName() {
         return fullName;
     }
 
+    @Serial
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("songName", getSongName());
+        fields.put("singersNames", new HashSet<>(getSingersNames()));
+        fields.put("songFile", getSongFile());
+        fields.put("fullName", fullName);
+        fields.put("rating", rating);
+        out.writeFields();
+    }
+
+    @Serial
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        String songName = (String) fields.get("songName", null);
+        String fullName = (String) fields.get("fullName", null);
+        if (songName == null || fullName == null || !fullName.endsWith(NAME_SEPARATOR + songName)) {
+            throw new InvalidObjectException("Song without a valid name");
+        }
+        init(fullName.substring(0, fullName.length() - songName.length() - NAME_SEPARATOR.length()), songName);
+        rating = fields.get("rating", 0);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Song song = (Song) o;
-        return Objects.equals(songName, song.songName) && Objects.equals(singersNames, song.singersNames) && Objects.equals(songFile, song.songFile);
+        return hash == song.hash && fullName.equals(song.fullName);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(songName, singersNames, songFile);
+        return hash;
     }
 
     @Override
     public String toString() {
         return "Song{" +
-                "songName='" + songName + '\'' +
-                ", singersNames=" + singersNames +
+                "songName='" + getSongName() + '\'' +
+                ", singersNames=" + getSingersNames() +
                 '}';
     }
 }
@@ -0,0 +1,12 @@
+package com.spotify.player;
+
+// Maps songs to small int ids and back, so collections of songs can be kept as int arrays
+public interface SongDictionary {
+    int UNKNOWN = -1;
+
+    // The id of the song, UNKNOWN when the dictionary does not know it and does not take new songs
+    int idOf(Song song);
+
+    // The song with the id, null when there is none
+    Song song(int id);
+}
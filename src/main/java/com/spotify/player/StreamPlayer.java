@@ -0,0 +1,56 @@
+package com.spotify.player;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+// Plays PCM data on the local sound card as it arrives from the server
+public class StreamPlayer {
+    private static final Logger logger = LogManager.getLogger(StreamPlayer.class);
+
+    private SourceDataLine sourceDataLine;
+
+    public void start(AudioFormat audioFormat) {
+        stop();
+        try {
+            DataLine.Info info = new DataLine.Info(SourceDataLine.class, audioFormat);
+            sourceDataLine = (SourceDataLine) AudioSystem.getLine(info);
+            sourceDataLine.open(audioFormat);
+            sourceDataLine.start();
+        } catch (LineUnavailableException | IllegalArgumentException e) {
+            logger.error("Line is unavailable, the streamed song will not be played");
+            sourceDataLine = null;
+        }
+    }
+
+    public void write(byte[] data) {
+        if (sourceDataLine != null) {
+            sourceDataLine.write(data, 0, data.length);
+        }
+    }
+
+    public void end() {
+        if (sourceDataLine != null) {
+            sourceDataLine.drain();
+            close();
+        }
+    }
+
+    public void stop() {
+        if (sourceDataLine != null) {
+            sourceDataLine.flush();
+            close();
+        }
+    }
+
+    private void close() {
+        sourceDataLine.stop();
+        sourceDataLine.close();
+        sourceDataLine = null;
+    }
+}
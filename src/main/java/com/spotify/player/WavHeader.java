@@ -0,0 +1,98 @@
+package com.spotify.player;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+public record WavHeader(int formatTag, int channels, int sampleRate, int bitsPerSample, int blockAlign,
+                        long dataOffset, long dataLength) {
+    private static final int RIFF_HEADER_SIZE = 12;
+    private static final int CHUNK_HEADER_SIZE = 8;
+    private static final int FMT_CHUNK_SIZE = 16;
+    private static final int RIFF = 0x46464952;
+    private static final int WAVE = 0x45564157;
+    private static final int FMT = 0x20746d66;
+    private static final int DATA = 0x61746164;
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_IEEE_FLOAT = 3;
+    private static final int BITS_PER_BYTE = 8;
+
+    // Walks the RIFF chunks until the "data" chunk, so the PCM samples can be sent without the header
+    public static WavHeader read(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RIFF_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, buffer, 0);
+        if (buffer.getInt(0) != RIFF || buffer.getInt(CHUNK_HEADER_SIZE) != WAVE) {
+            throw new IOException("Not a WAV file");
+        }
+
+        ByteBuffer format = null;
+        long position = RIFF_HEADER_SIZE;
+        ByteBuffer chunkHeader = ByteBuffer.allocate(CHUNK_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (position + CHUNK_HEADER_SIZE <= channel.size()) {
+            readFully(channel, chunkHeader.clear(), position);
+            int chunkId = chunkHeader.getInt(0);
+            long chunkSize = Integer.toUnsignedLong(chunkHeader.getInt(Integer.BYTES));
+            long chunkStart = position + CHUNK_HEADER_SIZE;
+            if (chunkId == FMT && chunkSize >= FMT_CHUNK_SIZE) {
+                format = ByteBuffer.allocate(FMT_CHUNK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                readFully(channel, format, chunkStart);
+            } else if (chunkId == DATA) {
+                if (format == null) {
+                    throw new IOException("WAV data chunk before format chunk");
+                }
+                long dataLength = Math.min(chunkSize, channel.size() - chunkStart);
+                return new WavHeader(Short.toUnsignedInt(format.getShort(0)), Short.toUnsignedInt(format.getShort(2)),
+                        format.getInt(4), Short.toUnsignedInt(format.getShort(14)), Short.toUnsignedInt(format.getShort(12)),
+                        chunkStart, dataLength);
+            }
+            position = chunkStart + chunkSize + (chunkSize & 1); // chunks are padded to an even size
+        }
+        throw new IOException("WAV file has no data chunk");
+    }
+
+    // A canonical 44 byte header for a file holding only this format and dataLength bytes of samples
+    public ByteBuffer toFileHeader() {
+        ByteBuffer buffer = ByteBuffer.allocate(RIFF_HEADER_SIZE + CHUNK_HEADER_SIZE + FMT_CHUNK_SIZE + CHUNK_HEADER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(RIFF);
+        buffer.putInt((int) (buffer.capacity() - CHUNK_HEADER_SIZE + dataLength));
+        buffer.putInt(WAVE);
+        buffer.putInt(FMT);
+        buffer.putInt(FMT_CHUNK_SIZE);
+        buffer.putShort((short) formatTag);
+        buffer.putShort((short) channels);
+        buffer.putInt(sampleRate);
+        buffer.putInt(sampleRate * blockAlign);
+        buffer.putShort((short) blockAlign);
+        buffer.putShort((short) bitsPerSample);
+        buffer.putInt(DATA);
+        buffer.putInt((int) dataLength);
+        return buffer.flip();
+    }
+
+    public AudioFormat toAudioFormat() {
+        AudioFormat.Encoding encoding;
+        if (formatTag == FORMAT_IEEE_FLOAT) {
+            encoding = AudioFormat.Encoding.PCM_FLOAT;
+        } else if (bitsPerSample == BITS_PER_BYTE) {
+            encoding = AudioFormat.Encoding.PCM_UNSIGNED;
+        } else {
+            encoding = AudioFormat.Encoding.PCM_SIGNED;
+        }
+        return new AudioFormat(encoding, sampleRate, bitsPerSample, channels, blockAlign, sampleRate, false);
+    }
+
+    public boolean isPcm() {
+        return formatTag == FORMAT_PCM || formatTag == FORMAT_IEEE_FLOAT;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of WAV file");
+            }
+        }
+    }
+}
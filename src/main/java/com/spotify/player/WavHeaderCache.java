@@ -0,0 +1,39 @@
+package com.spotify.player;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Parses the header of every song file once; an entry is reread only when the file changes
+public class WavHeaderCache {
+    private static final long VERSION_MULTIPLIER = 1_000_003L;
+
+    private final Map<Path, Entry> headers = new ConcurrentHashMap<>();
+
+    public WavHeader get(Path path, FileChannel file) throws IOException {
+        return entry(path, file).header;
+    }
+
+    // Changes whenever the song file is replaced, so clients can tell whether their cached copy is current
+    public long version(Path path, FileChannel file) throws IOException {
+        Entry entry = entry(path, file);
+        return entry.lastModified * VERSION_MULTIPLIER + entry.size;
+    }
+
+    private Entry entry(Path path, FileChannel file) throws IOException {
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        long size = file.size();
+        Entry entry = headers.get(path);
+        if (entry == null || entry.lastModified != lastModified || entry.size != size) {
+            entry = new Entry(WavHeader.read(file), lastModified, size);
+            headers.put(path, entry);
+        }
+        return entry;
+    }
+
+    private record Entry(WavHeader header, long lastModified, long size) {
+    }
+}
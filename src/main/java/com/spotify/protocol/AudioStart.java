@@ -0,0 +1,42 @@
+package com.spotify.protocol;
+
+import com.spotify.player.WavHeader;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Payload of an AUDIO_START frame: the format of the PCM data that follows in AUDIO_DATA frames,
+// the version of the song file, where in the song the stream starts and how many bytes it carries
+public record AudioStart(String songName, WavHeader header, long version, long offset, long length) {
+    public ByteBuffer encode() {
+        byte[] name = songName.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(5 * Integer.BYTES + 3 * Long.BYTES + Integer.BYTES + name.length);
+        payload.putInt(header.formatTag());
+        payload.putInt(header.channels());
+        payload.putInt(header.sampleRate());
+        payload.putInt(header.bitsPerSample());
+        payload.putInt(header.blockAlign());
+        payload.putLong(version);
+        payload.putLong(offset);
+        payload.putLong(length);
+        payload.putInt(name.length);
+        payload.put(name);
+        return Frames.frame(Frames.AUDIO_START, payload.array());
+    }
+
+    public static AudioStart decode(byte[] payload) {
+        ByteBuffer input = ByteBuffer.wrap(payload);
+        int formatTag = input.getInt();
+        int channels = input.getInt();
+        int sampleRate = input.getInt();
+        int bitsPerSample = input.getInt();
+        int blockAlign = input.getInt();
+        long version = input.getLong();
+        long offset = input.getLong();
+        long length = input.getLong();
+        byte[] name = new byte[input.getInt()];
+        input.get(name);
+        WavHeader header = new WavHeader(formatTag, channels, sampleRate, bitsPerSample, blockAlign, 0, offset + length);
+        return new AudioStart(new String(name, StandardCharsets.UTF_8), header, version, offset, length);
+    }
+}
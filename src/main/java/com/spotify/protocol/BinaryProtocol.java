@@ -0,0 +1,174 @@
+package com.spotify.protocol;
+
+import com.spotify.command.Command;
+import com.spotify.command.Response;
+import com.spotify.command.Status;
+import com.spotify.player.Song;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// Requests are [length:int][opcode:byte][argc:byte] followed by argc [length:short][utf-8] arguments,
+// replies are BINARY_REPLY frames holding [status:byte][kind:byte] and a message, song list or playlist;
+// the page kinds are followed by the cursor of the next page
+public class BinaryProtocol implements Protocol {
+    public static final byte MAGIC = 0;
+    public static final byte VERSION = 1;
+    public static final int HANDSHAKE_SIZE = 2;
+
+    private static final byte KIND_MESSAGE = 0;
+    private static final byte KIND_SONGS = 1;
+    private static final byte KIND_PLAYLIST = 2;
+    private static final byte KIND_SONGS_PAGE = 3;
+    private static final byte KIND_PLAYLIST_PAGE = 4;
+    private static final int MIN_REQUEST_SIZE = 2;
+
+    private final int maxRequestSize;
+
+    public BinaryProtocol(int maxRequestSize) {
+        this.maxRequestSize = maxRequestSize;
+    }
+
+    public static ByteBuffer handshake() {
+        return ByteBuffer.wrap(new byte[]{MAGIC, VERSION});
+    }
+
+    @Override
+    public List<Command> decode(ByteBuffer input) throws IOException {
+        List<Command> commands = new ArrayList<>();
+        while (input.remaining() >= Integer.BYTES) {
+            int length = input.getInt(input.position());
+            if (length < MIN_REQUEST_SIZE || length > maxRequestSize) {
+                throw new IOException("Invalid binary request length " + length);
+            }
+            if (input.remaining() < Integer.BYTES + length) {
+                break;
+            }
+            ByteBuffer request = input.slice(input.position() + Integer.BYTES, length);
+            input.position(input.position() + Integer.BYTES + length);
+            try {
+                commands.add(decodeCommand(request));
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Malformed binary request", e);
+            }
+        }
+        return commands;
+    }
+
+    @Override
+    public ByteBuffer encode(Response response) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(response.status().code());
+            boolean paged = response.cursor() != null;
+            if (response.playlistName() != null) {
+                out.writeByte(paged ? KIND_PLAYLIST_PAGE : KIND_PLAYLIST);
+                writeString(out, response.playlistName());
+                writeSongs(out, response.songs());
+            } else if (response.songs() != null) {
+                out.writeByte(paged ? KIND_SONGS_PAGE : KIND_SONGS);
+                writeSongs(out, response.songs());
+            } else {
+                out.writeByte(KIND_MESSAGE);
+                writeString(out, response.message());
+            }
+            if (paged) {
+                writeString(out, response.cursor());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not encode binary reply", e);
+        }
+        return Frames.frame(Frames.BINARY_REPLY, bytes.toByteArray());
+    }
+
+    public static ByteBuffer encodeRequest(Opcode opcode, String... arguments) {
+        List<byte[]> encodedArguments = new ArrayList<>();
+        int length = MIN_REQUEST_SIZE;
+        for (String argument : arguments) {
+            byte[] encoded = argument.getBytes(StandardCharsets.UTF_8);
+            encodedArguments.add(encoded);
+            length += Short.BYTES + encoded.length;
+        }
+
+        ByteBuffer request = ByteBuffer.allocate(Integer.BYTES + length);
+        request.putInt(length);
+        request.put(opcode.code());
+        request.put((byte) arguments.length);
+        for (byte[] argument : encodedArguments) {
+            request.putShort((short) argument.length);
+            request.put(argument);
+        }
+        return request.flip();
+    }
+
+    public static BinaryReply decodeReply(byte[] payload) {
+        ByteBuffer input = ByteBuffer.wrap(payload);
+        Status status = Status.fromCode(input.get());
+        byte kind = input.get();
+        return switch (kind) {
+            case KIND_SONGS -> new BinaryReply(status, null, null, readSongs(input), null);
+            case KIND_PLAYLIST -> {
+                String name = readString(input);
+                yield new BinaryReply(status, null, name, readSongs(input), null);
+            }
+            case KIND_SONGS_PAGE -> {
+                List<BinaryReply.SongEntry> songs = readSongs(input);
+                yield new BinaryReply(status, null, null, songs, readString(input));
+            }
+            case KIND_PLAYLIST_PAGE -> {
+                String name = readString(input);
+                List<BinaryReply.SongEntry> songs = readSongs(input);
+                yield new BinaryReply(status, null, name, songs, readString(input));
+            }
+            default -> new BinaryReply(status, readString(input), null, List.of(), null);
+        };
+    }
+
+    private Command decodeCommand(ByteBuffer input) {
+        Opcode opcode = Opcode.fromCode(input.get());
+        int argumentsCount = Byte.toUnsignedInt(input.get());
+        String[] arguments = new String[argumentsCount];
+        for (int i = 0; i < argumentsCount; i++) {
+            arguments[i] = readString(input);
+        }
+        return new Command(opcode == null ? "" : opcode.command(), arguments);
+    }
+
+    private static void writeSongs(DataOutputStream out, Collection<Song> songs) throws IOException {
+        out.writeInt(songs.size());
+        for (Song song : songs) {
+            out.writeInt(song.getRating());
+            writeString(out, song.getFullName());
+        }
+    }
+
+    private static List<BinaryReply.SongEntry> readSongs(ByteBuffer input) {
+        int count = input.getInt();
+        List<BinaryReply.SongEntry> songs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int rating = input.getInt();
+            songs.add(new BinaryReply.SongEntry(readString(input), rating));
+        }
+        return songs;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer input) {
+        byte[] bytes = new byte[Short.toUnsignedInt(input.getShort())];
+        input.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,12 @@
+package com.spotify.protocol;
+
+import com.spotify.command.Status;
+
+import java.util.List;
+
+// cursor is the cursor of the next page, null when the reply holds the whole result or its last page
+public record BinaryReply(Status status, String message, String playlistName, List<SongEntry> songs,
+                          String cursor) {
+    public record SongEntry(String fullName, int rating) {
+    }
+}
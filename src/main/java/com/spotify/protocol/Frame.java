@@ -0,0 +1,9 @@
+package com.spotify.protocol;
+
+import java.nio.charset.StandardCharsets;
+
+public record Frame(byte type, byte[] payload) {
+    public String text() {
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+}
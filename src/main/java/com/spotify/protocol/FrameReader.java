@@ -0,0 +1,39 @@
+package com.spotify.protocol;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+public class FrameReader {
+    private final ReadableByteChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocate(Frames.HEADER_SIZE);
+
+    public FrameReader(ReadableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    public Frame read() throws IOException {
+        header.clear();
+        readFully(header);
+        header.flip();
+
+        byte type = header.get();
+        int length = header.getInt();
+        if (length < 0) {
+            throw new IOException("Invalid frame length " + length);
+        }
+
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(payload);
+        return new Frame(type, payload.array());
+    }
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Connection closed by the server");
+            }
+        }
+    }
+}
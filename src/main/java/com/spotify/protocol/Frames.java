@@ -0,0 +1,45 @@
+package com.spotify.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Every server message is sent as [type:byte][length:int][payload], requests are newline terminated lines
+public final class Frames {
+    public static final byte REPLY = 1;
+    public static final byte BINARY_REPLY = 2;
+    public static final byte AUDIO_START = 3;
+    public static final byte AUDIO_DATA = 4;
+    public static final byte AUDIO_END = 5;
+    public static final byte AUDIO_CACHED = 6;
+    public static final int HEADER_SIZE = Byte.BYTES + Integer.BYTES;
+    public static final char REQUEST_DELIMITER = '\n';
+
+    private Frames() {
+    }
+
+    public static ByteBuffer reply(String text) {
+        return frame(REPLY, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Tells the client to play its cached copy of the song, payload is [version:long][song name]
+    public static ByteBuffer audioCached(String songName, long version) {
+        byte[] name = songName.getBytes(StandardCharsets.UTF_8);
+        return frame(AUDIO_CACHED, ByteBuffer.allocate(Long.BYTES + name.length).putLong(version).put(name).array());
+    }
+
+    public static boolean isAudio(byte type) {
+        return type >= AUDIO_START && type <= AUDIO_CACHED;
+    }
+
+    public static ByteBuffer header(byte type, int length) {
+        return ByteBuffer.allocate(HEADER_SIZE).put(type).putInt(length).flip();
+    }
+
+    public static ByteBuffer frame(byte type, byte[] payload) {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        frame.put(type);
+        frame.putInt(payload.length);
+        frame.put(payload);
+        return frame.flip();
+    }
+}
@@ -0,0 +1,46 @@
+package com.spotify.protocol;
+
+public enum Opcode {
+    LOGIN(1, "login"),
+    REGISTER(2, "register"),
+    LOGOUT(3, "logout"),
+    DISCONNECT(4, "disconnect"),
+    SEARCH(5, "search"),
+    TOP(6, "top"),
+    CREATE_PLAYLIST(7, "create-playlist"),
+    ADD_SONG_TO(8, "add-song-to"),
+    SHOW_PLAYLIST(9, "show-playlist"),
+    PLAY_PLAYLIST(10, "play-playlist"),
+    PLAY(11, "play"),
+    STOP(12, "stop"),
+    MANUAL(13, "man"),
+    RESUME(14, "resume");
+
+    private static final Opcode[] BY_CODE = new Opcode[values().length + 1];
+
+    static {
+        for (Opcode opcode : values()) {
+            BY_CODE[opcode.code] = opcode;
+        }
+    }
+
+    private final byte code;
+    private final String command;
+
+    Opcode(int code, String command) {
+        this.code = (byte) code;
+        this.command = command;
+    }
+
+    public byte code() {
+        return code;
+    }
+
+    public String command() {
+        return command;
+    }
+
+    public static Opcode fromCode(byte code) {
+        return code > 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+}
@@ -0,0 +1,15 @@
+package com.spotify.protocol;
+
+import com.spotify.command.Command;
+import com.spotify.command.Response;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+public interface Protocol {
+    // Consumes every complete request from the buffer and leaves a trailing partial request unread
+    List<Command> decode(ByteBuffer input) throws IOException;
+
+    ByteBuffer encode(Response response);
+}
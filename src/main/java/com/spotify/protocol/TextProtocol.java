@@ -0,0 +1,40 @@
+package com.spotify.protocol;
+
+import com.spotify.command.Command;
+import com.spotify.command.CommandCreator;
+import com.spotify.command.Response;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TextProtocol implements Protocol {
+    @Override
+    public List<Command> decode(ByteBuffer input) {
+        List<Command> commands = new ArrayList<>();
+        int lineStart = input.position();
+        for (int i = lineStart; i < input.limit(); i++) {
+            if (input.get(i) == Frames.REQUEST_DELIMITER) {
+                commands.add(CommandCreator.newCommand(decodeLine(input, lineStart, i)));
+                lineStart = i + 1;
+            }
+        }
+        input.position(lineStart);
+        return commands;
+    }
+
+    @Override
+    public ByteBuffer encode(Response response) {
+        return Frames.reply(response.text());
+    }
+
+    private String decodeLine(ByteBuffer input, int start, int end) {
+        if (end > start && input.get(end - 1) == '\r') {
+            end--;
+        }
+        byte[] line = new byte[end - start];
+        input.get(start, line);
+        return new String(line, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,125 @@
+package com.spotify.server;
+
+import com.spotify.player.WavHeader;
+import com.spotify.protocol.AudioStart;
+import com.spotify.protocol.Frames;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+// Sends a song as AUDIO_START, a series of AUDIO_DATA frames whose payload goes straight from the file
+// to the socket through FileChannel.transferTo, and a final AUDIO_END frame.
+// When the client already has the current version cached only an AUDIO_CACHED frame is sent.
+class AudioStream {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final String songName;
+    private final FileChannel file;
+    private final WavHeader header;
+    private final long version;
+    private final boolean cachedByClient;
+    private final long start;
+    private final long end;
+    private long position;
+    private ByteBuffer frame;
+    private long chunkRemaining = 0;
+    private boolean started = false;
+    private boolean ending = false;
+    private boolean done = false;
+    private volatile boolean cancelled = false;
+
+    AudioStream(String songName, FileChannel file, WavHeader header, long dataOffset, long version) {
+        this(songName, file, header, header.dataOffset() + dataOffset, header.dataOffset() + header.dataLength(),
+                version, false);
+    }
+
+    private AudioStream(String songName, FileChannel file, WavHeader header, long start, long end, long version,
+                        boolean cachedByClient) {
+        this.songName = songName;
+        this.file = file;
+        this.header = header;
+        this.start = start;
+        this.position = start;
+        this.end = end;
+        this.version = version;
+        this.cachedByClient = cachedByClient;
+    }
+
+    static AudioStream cached(String songName, FileChannel file, long version) {
+        return new AudioStream(songName, file, null, 0, 0, version, true);
+    }
+
+    boolean cancel() {
+        boolean wasActive = !cancelled && !done;
+        cancelled = true;
+        return wasActive;
+    }
+
+    boolean isStarted() {
+        return started;
+    }
+
+    boolean isDone() {
+        return done;
+    }
+
+    // A frame that was started has to be completed before anything else is written to the socket
+    boolean isMidFrame() {
+        return frame != null || chunkRemaining > 0;
+    }
+
+    boolean writeNextFrame(SocketChannel channel) throws IOException {
+        if (!started && cancelled) {
+            close();
+            return true;
+        }
+        if (!started && cachedByClient) {
+            started = true;
+            ending = true;
+            frame = Frames.audioCached(songName, version);
+        } else if (!started) {
+            started = true;
+            frame = new AudioStart(songName, header, version, start - header.dataOffset(), end - start).encode();
+        } else if (cancelled || position >= end) {
+            ending = true;
+            frame = Frames.frame(Frames.AUDIO_END, songName.getBytes(StandardCharsets.UTF_8));
+        } else {
+            int length = (int) Math.min(CHUNK_SIZE, end - position);
+            frame = Frames.header(Frames.AUDIO_DATA, length);
+            chunkRemaining = length;
+        }
+        return continueFrame(channel);
+    }
+
+    // Returns true when the current frame has been written completely
+    boolean continueFrame(SocketChannel channel) throws IOException {
+        if (frame != null) {
+            channel.write(frame);
+            if (frame.hasRemaining()) {
+                return false;
+            }
+            frame = null;
+            if (ending) {
+                close();
+                return true;
+            }
+        }
+        while (chunkRemaining > 0) {
+            long transferred = file.transferTo(position, chunkRemaining, channel);
+            if (transferred == 0) {
+                return false;
+            }
+            position += transferred;
+            chunkRemaining -= transferred;
+        }
+        return true;
+    }
+
+    void close() throws IOException {
+        done = true;
+        file.close();
+    }
+}
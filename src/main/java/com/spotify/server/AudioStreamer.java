@@ -0,0 +1,94 @@
+package com.spotify.server;
+
+import com.spotify.player.PlaybackOffset;
+import com.spotify.player.Player;
+import com.spotify.player.Song;
+import com.spotify.player.WavHeader;
+import com.spotify.player.WavHeaderCache;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Plays songs for a remote client by queueing them for streaming over its connection
+public class AudioStreamer implements Player {
+    private static final Logger logger = LogManager.getLogger(AudioStreamer.class);
+
+    private static final WavHeaderCache headers = new WavHeaderCache();
+    private static final long NO_CACHED_VERSION = -1;
+
+    private final Queue<AudioStream> streams = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public boolean play(Song song, PlaybackOffset from) {
+        return play(song, from, NO_CACHED_VERSION);
+    }
+
+    @Override
+    public boolean play(Song song, PlaybackOffset from, long cachedVersion) {
+        FileChannel file = null;
+        try {
+            Path path = song.getSongFile().toPath();
+            file = FileChannel.open(path, StandardOpenOption.READ);
+            WavHeader header = headers.get(path, file);
+            if (!header.isPcm()) {
+                throw new IOException("Only PCM WAV files can be streamed");
+            }
+            long version = headers.version(path, file);
+            if (from.isStart() && version == cachedVersion) {
+                streams.add(AudioStream.cached(song.getFullName(), file, version));
+            } else {
+                streams.add(new AudioStream(song.getFullName(), file, header, from.toDataOffset(header), version));
+            }
+            return true;
+        } catch (IOException e) {
+            logger.error("Could not open song " + song.getFullName() + " for streaming");
+            closeQuietly(file);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean stop() {
+        boolean stopped = false;
+        for (AudioStream stream : streams) {
+            stopped |= stream.cancel();
+        }
+        return stopped;
+    }
+
+    AudioStream current() {
+        return streams.peek();
+    }
+
+    void finish(AudioStream stream) {
+        streams.remove(stream);
+    }
+
+    void close() {
+        AudioStream stream;
+        while ((stream = streams.poll()) != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                logger.error("Could not close streamed song");
+            }
+        }
+    }
+
+    private void closeQuietly(FileChannel file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.close();
+        } catch (IOException e) {
+            logger.error("Could not close song file");
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.spotify.server;
+
+import com.spotify.command.Command;
+import com.spotify.command.CommandExecutor;
+import com.spotify.command.ReplyKey;
+import com.spotify.command.Response;
+import com.spotify.command.Status;
+import com.spotify.protocol.Opcode;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs commands off the selector threads; every connection has at most one drain task in flight so replies keep their order
+public class CommandDispatcher {
+    private static final Logger logger = LogManager.getLogger(CommandDispatcher.class);
+    private static final int QUEUED_TASKS_PER_WORKER = 64;
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 5;
+    private static final long RESPONSE_CACHE_BYTES = 32L * 1024 * 1024;
+    private static final long RATINGS_STALENESS_MILLIS = 1000;
+
+    private final ExecutorService executor;
+    private final ResponseCache responses = new ResponseCache(RESPONSE_CACHE_BYTES, RATINGS_STALENESS_MILLIS);
+
+    public CommandDispatcher(DispatchMode mode, int workerThreads) {
+        this.executor = switch (mode) {
+            case INLINE -> null;
+            case POOL -> newWorkerPool(workerThreads);
+            case VIRTUAL -> newVirtualThreadExecutor(workerThreads);
+        };
+    }
+
+    public void dispatch(Connection connection, List<Command> requests) {
+        if (!connection.addPendingRequests(requests)) {
+            return; // a drain task for this connection is already running and will pick the requests up
+        }
+        if (executor == null) {
+            drain(connection);
+        } else {
+            executor.execute(() -> drain(connection));
+        }
+    }
+
+    public void shutdown() {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Executes everything a connection pipelined so far and hands all replies to the selector thread at once.
+    // A command that throws gets a FAILED reply, so neither the worker nor the selector thread dies with it.
+    private void drain(Connection connection) {
+        boolean drained = false;
+        try {
+            drainPending(connection);
+            drained = true;
+        } finally {
+            if (!drained) {
+                connection.stopDraining();
+            }
+        }
+    }
+
+    private void drainPending(Connection connection) {
+        List<Command> requests;
+        while (!(requests = connection.pollPendingRequests()).isEmpty()) {
+            for (Command request : requests) {
+                CommandExecutor commandExecutor = connection.getCommandExecutor();
+                ReplyKey key = commandExecutor.replyKey(request);
+                ByteBuffer reply = key == null ? null : responses.get(connection.getProtocolType(), key);
+                if (reply != null) {
+                    connection.enqueueReply(reply);
+                    continue;
+                }
+
+                Response response = handle(commandExecutor, request);
+                reply = connection.encode(response);
+                if (key != null && response.cursor() == null) { // a cursor only works on its own connection
+                    responses.put(connection.getProtocolType(), key, reply);
+                }
+                connection.enqueueReply(reply);
+                if (isDisconnect(request, response)) {
+                    connection.closeAfterFlush();
+                    break;
+                }
+            }
+            connection.getSelectorThread().requestWrite(connection);
+        }
+    }
+
+    private static Response handle(CommandExecutor commandExecutor, Command request) {
+        try {
+            return commandExecutor.handle(request);
+        } catch (RuntimeException e) {
+            logger.error("Could not execute command " + request.command(), e);
+            return Response.of(Status.FAILED, String.format("Could not execute %s", request.command()));
+        }
+    }
+
+    private static boolean isDisconnect(Command request, Response response) {
+        return Opcode.DISCONNECT.command().equals(request.command()) && response.status() == Status.OK;
+    }
+
+    private static ExecutorService newWorkerPool(int workerThreads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        // When the queue is full the selector thread runs the command itself, which throttles reading new input
+        return new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workerThreads * QUEUED_TASKS_PER_WORKER),
+                runnable -> new Thread(runnable, "spotify-worker-" + threadNumber.getAndIncrement()),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private static ExecutorService newVirtualThreadExecutor(int workerThreads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            logger.warn("Virtual threads are not available on this JVM, falling back to a worker pool");
+            return newWorkerPool(workerThreads);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.spotify.server;
+
+import com.spotify.command.Command;
+import com.spotify.command.CommandExecutor;
+import com.spotify.command.Response;
+import com.spotify.protocol.BinaryProtocol;
+import com.spotify.protocol.Protocol;
+import com.spotify.protocol.TextProtocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class Connection {
+    private static final int INITIAL_READ_BUFFER_SIZE = 1024;
+    private static final int MAX_REQUEST_SIZE = 64 * 1024;
+    static final int MAX_BUFFERS_PER_WRITE = 64;
+
+    private final SocketChannel channel;
+    private final SelectorThread selectorThread;
+    private final AudioStreamer audioStreamer = new AudioStreamer();
+    private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+    private final Queue<Command> pendingRequests = new ArrayDeque<>();
+    private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+    private CommandExecutor commandExecutor;
+    private Protocol protocol;
+    private boolean draining = false;
+    private volatile boolean closeAfterFlush = false;
+
+    public Connection(SocketChannel channel, SelectorThread selectorThread) {
+        this.channel = channel;
+        this.selectorThread = selectorThread;
+    }
+
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    public CommandExecutor getCommandExecutor() {
+        return commandExecutor;
+    }
+
+    public void setCommandExecutor(CommandExecutor commandExecutor) {
+        this.commandExecutor = commandExecutor;
+    }
+
+    public AudioStreamer getAudioStreamer() {
+        return audioStreamer;
+    }
+
+    public SelectorThread getSelectorThread() {
+        return selectorThread;
+    }
+
+    public int read() throws IOException {
+        if (!readBuffer.hasRemaining()) {
+            growReadBuffer();
+        }
+        return channel.read(readBuffer);
+    }
+
+    public List<Command> pollRequests() throws IOException {
+        readBuffer.flip();
+        try {
+            if (protocol == null && !negotiateProtocol()) {
+                return List.of();
+            }
+            return protocol.decode(readBuffer);
+        } finally {
+            readBuffer.compact();
+        }
+    }
+
+    // The first byte of a connection tells whether the client speaks the binary or the text protocol
+    private boolean negotiateProtocol() throws IOException {
+        if (!readBuffer.hasRemaining()) {
+            return false;
+        }
+        if (readBuffer.get(readBuffer.position()) != BinaryProtocol.MAGIC) {
+            protocol = new TextProtocol();
+            return true;
+        }
+        if (readBuffer.remaining() < BinaryProtocol.HANDSHAKE_SIZE) {
+            return false;
+        }
+        readBuffer.get();
+        byte version = readBuffer.get();
+        if (version != BinaryProtocol.VERSION) {
+            throw new IOException("Unsupported binary protocol version " + version);
+        }
+        protocol = new BinaryProtocol(MAX_REQUEST_SIZE - Integer.BYTES);
+        enqueueReply(Response.ok("Binary protocol version " + version));
+        return true;
+    }
+
+    // Returns true when the caller has to start draining the pending requests
+    public synchronized boolean addPendingRequests(List<Command> requests) {
+        pendingRequests.addAll(requests);
+        if (draining || pendingRequests.isEmpty()) {
+            return false;
+        }
+        draining = true;
+        return true;
+    }
+
+    // Takes every request queued so far so they can be executed as one batch
+    public synchronized List<Command> pollPendingRequests() {
+        List<Command> requests = closeAfterFlush ? List.of() : new ArrayList<>(pendingRequests);
+        pendingRequests.clear();
+        if (requests.isEmpty()) {
+            draining = false;
+        }
+        return requests;
+    }
+
+    // Lets the next dispatch start a drain task after one ended without emptying the pending requests
+    public synchronized void stopDraining() {
+        draining = false;
+    }
+
+    public void enqueueReply(Response response) {
+        enqueueReply(encode(response));
+    }
+
+    public void enqueueReply(ByteBuffer encodedReply) {
+        writeQueue.add(encodedReply);
+    }
+
+    public ByteBuffer encode(Response response) {
+        return protocol.encode(response);
+    }
+
+    // Encoded replies can only be shared between connections that speak the same protocol
+    public Class<?> getProtocolType() {
+        return protocol.getClass();
+    }
+
+    public boolean hasPendingOutput() {
+        return !writeQueue.isEmpty() || audioStreamer.current() != null;
+    }
+
+    // Writes as much of the queued output as the socket accepts, returns true when nothing is left.
+    // Replies may be sent between two audio frames, but never in the middle of one. The first frame
+    // of a song goes ahead of the replies, so a client reading the play reply knows audio follows.
+    public boolean flush() throws IOException {
+        AudioStream stream = audioStreamer.current();
+        if (stream != null && stream.isMidFrame() && !stream.continueFrame(channel)) {
+            return false;
+        }
+        if (stream != null && !stream.isStarted()) {
+            if (!stream.writeNextFrame(channel)) {
+                return false;
+            }
+            if (stream.isDone()) {
+                audioStreamer.finish(stream);
+            }
+        }
+        if (!flushReplies()) {
+            return false;
+        }
+        while ((stream = audioStreamer.current()) != null) {
+            if (!stream.writeNextFrame(channel) || !stream.isDone()) {
+                return false; // one audio frame per write readiness keeps streaming fair to the other connections
+            }
+            audioStreamer.finish(stream);
+        }
+        return true;
+    }
+
+    private boolean flushReplies() throws IOException {
+        while (!writeQueue.isEmpty()) {
+            ByteBuffer[] batch = nextWriteBatch();
+            channel.write(batch);
+            for (ByteBuffer buffer : batch) {
+                if (buffer.hasRemaining()) {
+                    return false;
+                }
+                writeQueue.poll();
+            }
+        }
+        return true;
+    }
+
+    // The queued replies the next gathering write sends, oldest first
+    ByteBuffer[] nextWriteBatch() {
+        List<ByteBuffer> batch = new ArrayList<>();
+        Iterator<ByteBuffer> iterator = writeQueue.iterator();
+        while (iterator.hasNext() && batch.size() < MAX_BUFFERS_PER_WRITE) {
+            batch.add(iterator.next());
+        }
+        return batch.toArray(new ByteBuffer[0]);
+    }
+
+    public void closeAfterFlush() {
+        closeAfterFlush = true;
+    }
+
+    public boolean shouldClose() {
+        return closeAfterFlush && writeQueue.isEmpty();
+    }
+
+    public void close() throws IOException {
+        audioStreamer.close();
+        channel.close();
+    }
+
+    private void growReadBuffer() throws IOException {
+        if (readBuffer.capacity() >= MAX_REQUEST_SIZE) {
+            throw new IOException("Request exceeds " + MAX_REQUEST_SIZE + " bytes");
+        }
+        ByteBuffer grown = ByteBuffer.allocate(Math.min(readBuffer.capacity() * 2, MAX_REQUEST_SIZE));
+        readBuffer.flip();
+        grown.put(readBuffer);
+        readBuffer = grown;
+    }
+}
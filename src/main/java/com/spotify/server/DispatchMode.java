@@ -0,0 +1,7 @@
+package com.spotify.server;
+
+public enum DispatchMode {
+    INLINE,
+    POOL,
+    VIRTUAL
+}
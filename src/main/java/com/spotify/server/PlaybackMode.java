@@ -0,0 +1,6 @@
+package com.spotify.server;
+
+public enum PlaybackMode {
+    SERVER,
+    STREAM
+}
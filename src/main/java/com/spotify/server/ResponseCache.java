@@ -0,0 +1,113 @@
+package com.spotify.server;
+
+import com.spotify.command.ReplyKey;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Encoded replies of read-only commands, ready to be written to a channel. An entry is stamped with the
+// version of its key and dropped as soon as it is asked for with a newer version. Newer ratings only drop it
+// once it is older than the ratings staleness, so plays, which change the ratings all the time, leave
+// search and top replies cached while showing ratings at most that old. The cache is split into
+// segments with their own lock, and each segment evicts its least recently used replies to stay in its
+// share of the byte budget.
+public class ResponseCache {
+    private static final int SEGMENTS = 16;
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long ratingsStalenessNanos;
+
+    private record Key(Class<?> protocol, String command, String arguments) {
+    }
+
+    private record Entry(long version, long ratingsVersion, long storedAtNanos, ByteBuffer reply) {
+    }
+
+    public ResponseCache(long maxBytes, long ratingsStalenessMillis) {
+        this.ratingsStalenessNanos = TimeUnit.MILLISECONDS.toNanos(ratingsStalenessMillis);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(maxBytes / SEGMENTS);
+        }
+    }
+
+    // A reply of its own for the caller to write, null when there is no reply for this version
+    public ByteBuffer get(Class<?> protocol, ReplyKey replyKey) {
+        Key key = new Key(protocol, replyKey.command(), replyKey.arguments());
+        ByteBuffer reply = segmentOf(key).get(key, replyKey.version(), replyKey.ratingsVersion(),
+                System.nanoTime() - ratingsStalenessNanos);
+        return reply == null ? null : reply.duplicate();
+    }
+
+    // Keeps a copy of the reply, the caller's buffer is left as it is
+    public void put(Class<?> protocol, ReplyKey replyKey, ByteBuffer reply) {
+        Key key = new Key(protocol, replyKey.command(), replyKey.arguments());
+        ByteBuffer copy = ByteBuffer.allocateDirect(reply.remaining()).put(reply.duplicate()).flip();
+        segmentOf(key).put(key, new Entry(replyKey.version(), replyKey.ratingsVersion(), System.nanoTime(),
+                copy.asReadOnlyBuffer()));
+    }
+
+    private Segment segmentOf(Key key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static class Segment {
+        private final long budget;
+        private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes = 0;
+
+        Segment(long budget) {
+            this.budget = budget;
+        }
+
+        synchronized ByteBuffer get(Key key, long version, long ratingsVersion, long staleBeforeNanos) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.version() != version || (entry.ratingsVersion() != ratingsVersion
+                    && entry.storedAtNanos() - staleBeforeNanos <= 0)) {
+                remove(key);
+                return null;
+            }
+            return entry.reply();
+        }
+
+        synchronized void put(Key key, Entry entry) {
+            Entry current = entries.get(key);
+            if (current != null && (current.version() > entry.version() || (current.version() == entry.version()
+                    && current.ratingsVersion() > entry.ratingsVersion()))) {
+                return; // a reply for a newer version got here first
+            }
+            remove(key);
+            long cost = cost(key, entry);
+            if (cost > budget) {
+                return;
+            }
+            entries.put(key, entry);
+            bytes += cost;
+            Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+            while (bytes > budget) {
+                Map.Entry<Key, Entry> evicted = eldest.next();
+                bytes -= cost(evicted.getKey(), evicted.getValue());
+                eldest.remove();
+            }
+        }
+
+        private void remove(Key key) {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                bytes -= cost(key, entry);
+            }
+        }
+
+        private static long cost(Key key, Entry entry) {
+            return ENTRY_OVERHEAD + (key.command().length() + key.arguments().length()) * 2L
+                    + entry.reply().capacity();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.spotify.server;
+
+import com.spotify.command.CommandExecutor;
+import com.spotify.command.SessionTable;
+import com.spotify.player.MusicPlayer;
+import com.spotify.player.Player;
+import com.spotify.storage.Storage;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.channels.Channel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class SelectorThread implements Runnable {
+    private static final Logger logger = LogManager.getLogger(SelectorThread.class);
+
+    private final Selector selector;
+    private final Storage storage;
+    private final SessionTable sessions;
+    private final MusicPlayer musicPlayer;
+    private final CommandDispatcher commandDispatcher;
+    private final PlaybackMode playbackMode;
+    private final Queue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+    private final Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private volatile Thread thread;
+    private volatile boolean isWorking = true;
+
+    public SelectorThread(Storage storage, SessionTable sessions, MusicPlayer musicPlayer,
+                          CommandDispatcher commandDispatcher, PlaybackMode playbackMode) throws IOException {
+        this.selector = Selector.open();
+        this.storage = storage;
+        this.sessions = sessions;
+        this.musicPlayer = musicPlayer;
+        this.commandDispatcher = commandDispatcher;
+        this.playbackMode = playbackMode;
+    }
+
+    public void register(SocketChannel channel) {
+        pendingChannels.add(channel);
+        selector.wakeup();
+    }
+
+    // Called by the workers once they queued a reply, the actual write always happens on this selector thread
+    public void requestWrite(Connection connection) {
+        if (Thread.currentThread() == thread) {
+            handleWrite(connection.getChannel().keyFor(selector));
+            return;
+        }
+        pendingWrites.add(connection);
+        selector.wakeup();
+    }
+
+    public void stop() {
+        isWorking = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+        try {
+            while (isWorking) {
+                selector.select();
+                registerPendingChannels();
+                processPendingWrites();
+
+                Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+                while (keyIterator.hasNext()) {
+                    SelectionKey key = keyIterator.next();
+                    keyIterator.remove();
+                    if (key.isValid() && key.isWritable()) {
+                        handleWrite(key);
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        handleRead(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Selector thread stopped unexpectedly", e);
+        } finally {
+            closeSelector();
+        }
+    }
+
+    private void registerPendingChannels() {
+        SocketChannel channel;
+        while ((channel = pendingChannels.poll()) != null) {
+            try {
+                channel.configureBlocking(false);
+                Connection connection = new Connection(channel, this);
+                Player player = playbackMode == PlaybackMode.STREAM ? connection.getAudioStreamer() : musicPlayer;
+                connection.setCommandExecutor(new CommandExecutor(storage, player, sessions));
+                channel.register(selector, SelectionKey.OP_READ, connection);
+            } catch (IOException e) {
+                logger.error("Could not register client channel");
+                closeChannel(channel);
+            }
+        }
+    }
+
+    private void handleRead(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (connection.read() < 0) {
+                close(key);
+                return;
+            }
+
+            commandDispatcher.dispatch(connection, connection.pollRequests());
+            if (connection.hasPendingOutput()) {
+                handleWrite(key);
+            }
+        } catch (IOException e) {
+            logger.error("Could not read from client");
+            close(key);
+        }
+    }
+
+    private void processPendingWrites() {
+        Connection connection;
+        while ((connection = pendingWrites.poll()) != null) {
+            handleWrite(connection.getChannel().keyFor(selector));
+        }
+    }
+
+    private void handleWrite(SelectionKey key) {
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (!connection.flush()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                return;
+            }
+            if (connection.shouldClose()) {
+                close(key);
+                return;
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            logger.error("Could not write to client");
+            close(key);
+        }
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            ((Connection) key.attachment()).close();
+        } catch (IOException e) {
+            logger.error("Could not close client connection");
+        }
+    }
+
+    private void closeSelector() {
+        for (SelectionKey key : selector.keys()) {
+            close(key);
+        }
+        SocketChannel channel;
+        while ((channel = pendingChannels.poll()) != null) {
+            closeChannel(channel);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            logger.error("Could not close selector");
+        }
+    }
+
+    private void closeChannel(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.error("Could not close client channel");
+        }
+    }
+}
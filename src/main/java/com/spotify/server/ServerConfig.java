@@ -0,0 +1,43 @@
+package com.spotify.server;
+
+import com.spotify.storage.StorageMode;
+
+public record ServerConfig(int port, int selectorThreads, DispatchMode dispatchMode, int workerThreads,
+                           PlaybackMode playbackMode, StorageMode storageMode, boolean warmUp) {
+    private static final String SELECTOR_THREADS_PROPERTY = "spotify.selector.threads";
+    private static final String DISPATCH_MODE_PROPERTY = "spotify.dispatch";
+    private static final String WORKER_THREADS_PROPERTY = "spotify.worker.threads";
+    private static final String PLAYBACK_MODE_PROPERTY = "spotify.playback";
+    private static final String STORAGE_MODE_PROPERTY = "spotify.storage";
+    private static final String WARM_UP_PROPERTY = "spotify.warmup";
+    private static final int WORKER_THREADS_PER_CORE = 4;
+
+    public ServerConfig {
+        if (selectorThreads <= 0) {
+            throw new IllegalArgumentException("Selector threads count must be positive");
+        }
+        if (workerThreads <= 0) {
+            throw new IllegalArgumentException("Worker threads count must be positive");
+        }
+    }
+
+    public static ServerConfig defaults(int port) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return new ServerConfig(port, cores, DispatchMode.POOL, cores * WORKER_THREADS_PER_CORE, PlaybackMode.STREAM,
+                StorageMode.MEMORY, false);
+    }
+
+    public static ServerConfig fromSystemProperties(int port) {
+        ServerConfig defaults = defaults(port);
+        String dispatchMode = System.getProperty(DISPATCH_MODE_PROPERTY, defaults.dispatchMode().name());
+        String playbackMode = System.getProperty(PLAYBACK_MODE_PROPERTY, defaults.playbackMode().name());
+        String storageMode = System.getProperty(STORAGE_MODE_PROPERTY, defaults.storageMode().name());
+        return new ServerConfig(port,
+                Integer.getInteger(SELECTOR_THREADS_PROPERTY, defaults.selectorThreads()),
+                DispatchMode.valueOf(dispatchMode.toUpperCase()),
+                Integer.getInteger(WORKER_THREADS_PROPERTY, defaults.workerThreads()),
+                PlaybackMode.valueOf(playbackMode.toUpperCase()),
+                StorageMode.valueOf(storageMode.toUpperCase()),
+                Boolean.getBoolean(WARM_UP_PROPERTY));
+    }
+}
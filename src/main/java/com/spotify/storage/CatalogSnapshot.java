@@ -0,0 +1,152 @@
+package com.spotify.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// The song catalog as a file that is read in place through a memory mapping, so opening it costs the same
+// for ten songs as for a million. Layout:
+// [magic:int][version:short][songs directory modified:long][count:int][slots:int]
+// [record offset:int] * count, indexed by song id
+// [song id + 1:int] * slots, an open addressing table on the full name hash, 0 marks a free slot
+// records of [present:byte][singer length:short][name length:short][full name:utf-8]
+final class CatalogSnapshot {
+    static final CatalogSnapshot EMPTY = new CatalogSnapshot(null, 0, 0, 0);
+
+    private static final int MAGIC = 0x53504353; // SPCS
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = Integer.BYTES + Short.BYTES + Long.BYTES + Integer.BYTES * 2;
+    private static final int RECORD_HEADER_SIZE = Byte.BYTES + Short.BYTES * 2;
+
+    private final ByteBuffer mapped;
+    private final long songsModified;
+    private final int count;
+    private final int slots;
+
+    private CatalogSnapshot(ByteBuffer mapped, long songsModified, int count, int slots) {
+        this.mapped = mapped;
+        this.songsModified = songsModified;
+        this.count = count;
+        this.slots = slots;
+    }
+
+    record Entry(String fullName, int singerLength, boolean present) {
+    }
+
+    static CatalogSnapshot open(Path file) throws IOException {
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // stays valid after close
+        }
+        if (mapped.limit() < HEADER_SIZE || mapped.getInt(0) != MAGIC) {
+            throw new IOException("Not a catalog snapshot " + file);
+        }
+        short version = mapped.getShort(Integer.BYTES);
+        if (version != VERSION) {
+            throw new IOException("Unsupported catalog snapshot version " + version);
+        }
+        long songsModified = mapped.getLong(Integer.BYTES + Short.BYTES);
+        int count = mapped.getInt(HEADER_SIZE - Integer.BYTES * 2);
+        int slots = mapped.getInt(HEADER_SIZE - Integer.BYTES);
+        if (count < 0 || Integer.bitCount(slots) != 1 || slots <= count
+                || (long) HEADER_SIZE + (long) (count + slots) * Integer.BYTES > mapped.limit()) {
+            throw new IOException("Corrupted catalog snapshot " + file);
+        }
+        return new CatalogSnapshot(mapped, songsModified, count, slots);
+    }
+
+    long songsModified() {
+        return songsModified;
+    }
+
+    int count() {
+        return count;
+    }
+
+    int idOf(String fullName) {
+        if (count == 0) {
+            return SongCatalog.UNKNOWN;
+        }
+        byte[] name = utf8(fullName);
+        for (int slot = slotOf(fullName, slots); ; slot = (slot + 1) & (slots - 1)) {
+            int id = mapped.getInt(slotsStart() + slot * Integer.BYTES) - 1;
+            if (id < 0) {
+                return SongCatalog.UNKNOWN;
+            }
+            if (Arrays.equals(name, nameBytes(id))) {
+                return id;
+            }
+        }
+    }
+
+    Entry entry(int id) {
+        int record = recordOffset(id);
+        return new Entry(new String(nameBytes(id), StandardCharsets.UTF_8),
+                Short.toUnsignedInt(mapped.getShort(record + Byte.BYTES)), mapped.get(record) != 0);
+    }
+
+    boolean isPresent(int id) {
+        return mapped.get(recordOffset(id)) != 0;
+    }
+
+    static ByteBuffer encode(long songsModified, List<Entry> entries) {
+        List<byte[]> names = new ArrayList<>(entries.size());
+        int slots = Integer.highestOneBit(Math.max(entries.size(), 1) * 2 - 1) << 1; // at most half full
+        int size = HEADER_SIZE + (entries.size() + slots) * Integer.BYTES;
+        for (Entry entry : entries) {
+            byte[] name = utf8(entry.fullName());
+            names.add(name);
+            size += RECORD_HEADER_SIZE + name.length;
+        }
+
+        ByteBuffer output = ByteBuffer.allocate(size);
+        output.putInt(MAGIC).putShort(VERSION).putLong(songsModified).putInt(entries.size()).putInt(slots);
+        int slotsStart = HEADER_SIZE + entries.size() * Integer.BYTES;
+        int record = slotsStart + slots * Integer.BYTES;
+        for (int id = 0; id < entries.size(); id++) {
+            Entry entry = entries.get(id);
+            output.putInt(HEADER_SIZE + id * Integer.BYTES, record);
+            int slot = slotOf(entry.fullName(), slots);
+            while (output.getInt(slotsStart + slot * Integer.BYTES) != 0) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            output.putInt(slotsStart + slot * Integer.BYTES, id + 1);
+
+            output.position(record);
+            output.put((byte) (entry.present() ? 1 : 0)).putShort((short) entry.singerLength())
+                    .putShort((short) names.get(id).length).put(names.get(id));
+            record = output.position();
+        }
+        return output.position(0);
+    }
+
+    private byte[] nameBytes(int id) {
+        int record = recordOffset(id);
+        byte[] name = new byte[Short.toUnsignedInt(mapped.getShort(record + Byte.BYTES + Short.BYTES))];
+        mapped.get(record + RECORD_HEADER_SIZE, name);
+        return name;
+    }
+
+    private int recordOffset(int id) {
+        return mapped.getInt(HEADER_SIZE + id * Integer.BYTES);
+    }
+
+    private int slotsStart() {
+        return HEADER_SIZE + count * Integer.BYTES;
+    }
+
+    private static int slotOf(String fullName, int slots) {
+        int hash = fullName.hashCode();
+        return (hash ^ (hash >>> 16)) & (slots - 1);
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -6,78 +6,54 @@ import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 public class InMemoryStorage implements Storage {
     private static final Logger logger = LogManager.getLogger(InMemoryStorage.class);
     private static final String USERS_DIR = "src/main/resources/Users/users.txt";
-    private static final String SONGS_DIR = "src/main/resources/Songs";
     private static final String PLAYLISTS_DIR = "src/main/resources/Playlists";
-
-    private static Map<String, String> users = new HashMap<>();
-    private static Set<Song> songs = new HashSet<>();
-    private static Set<Playlist> playlists = new HashSet<>();
+    private static final String LIBRARY_DIR = "src/main/resources";
+    private static final int WRITE_BEHIND_MAX_PENDING = 256;
+    private static final long WRITE_BEHIND_FLUSH_INTERVAL_MILLIS = 100;
+
+    private static final Map<String, String> users = new ConcurrentHashMap<>();
+    private static final WriteBehind writeBehind = new WriteBehind(PersistenceMode.configured(),
+            WRITE_BEHIND_MAX_PENDING, WRITE_BEHIND_FLUSH_INTERVAL_MILLIS);
+    private static final SongLibrary library = new SongLibrary(Path.of(LIBRARY_DIR), writeBehind);
+    private static final PlaylistStore playlists = new PlaylistStore(Path.of(PLAYLISTS_DIR),
+            InMemoryStorage::readPlaylist);
+    private static final PlaylistVersions playlistVersions = new PlaylistVersions();
 
     static {
         readUsers();
-        readSongs();
-        readRating();
-        readPlaylists();
-    }
-
-    private static void readSongs() {
-        try {
-            File songsFolder = new File(SONGS_DIR);
-            for (File f : Objects.requireNonNull(songsFolder.listFiles())) {
-                String fileName = f.getName();
-                String singerName = fileName.substring(0, fileName.indexOf("-") - 1);
-                String songName = fileName.substring(fileName.indexOf("-") + 2, fileName.lastIndexOf("."));
-                Song currentSong = new Song(singerName, songName);
-                if (!songs.contains(currentSong)) {
-                    songs.add(currentSong);
-                }
-            }
-        } catch (NullPointerException e) {
-            logger.error("Could not read songs from folder");
-        }
-    }
-
-    private static void readRating() {
-        try {
-            FileInputStream fileIn = new FileInputStream(SONGS_DIR.concat("Rating.txt"));
-            ObjectInputStream objectIn = new ObjectInputStream(fileIn);
-            Set<Song> listOfSongs = (HashSet<Song>) objectIn.readObject();
-            songs.addAll(listOfSongs);
-            objectIn.close();
-        } catch (FileNotFoundException e) {
-            logger.error("File for reading rating not found");
-        } catch (IOException e) {
-            logger.error("Could not read rating from file");
-        } catch (ClassNotFoundException e) {
-            logger.error("Class song not found");
-        }
     }
 
     private static void readUsers() {
         try {
-            FileInputStream fileIn = new FileInputStream(USERS_DIR);
-            ObjectInputStream objectIn = new ObjectInputStream(fileIn);
-            Map<String, String> loadedUsers = (HashMap<String, String>) objectIn.readObject();
-            users.putAll(loadedUsers);
-            objectIn.close();
-        } catch (FileNotFoundException e) {
+            ByteBuffer input = ByteBuffer.wrap(Files.readAllBytes(Path.of(USERS_DIR)));
+            if (StorageCodec.isJavaSerialized(input)) {
+                ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(input.array()));
+                Map<String, String> loadedUsers = (HashMap<String, String>) objectIn.readObject();
+                users.putAll(loadedUsers);
+                objectIn.close();
+                writeUsers(); // rewrite in the current format
+            } else {
+                users.putAll(StorageCodec.decodeUsers(input));
+            }
+        } catch (NoSuchFileException e) {
             logger.error("Clients file not found");
         } catch (IOException e) {
             logger.error("Clients error initializing stream");
@@ -86,66 +62,48 @@ public class InMemoryStorage implements Storage {
         }
     }
 
-    private static void readPlaylists() {
-        try {
-            File playlistsFolder = new File(PLAYLISTS_DIR);
-            for (File f : Objects.requireNonNull(playlistsFolder.listFiles())) {
-                FileInputStream fileIn = new FileInputStream(f);
-                ObjectInputStream objectIn = new ObjectInputStream(fileIn);
-                Playlist playlist = (Playlist) objectIn.readObject();
-                playlists.add(playlist);
-            }
-        } catch (NullPointerException e) {
-            logger.error("No playlist files in directory");
-        } catch (FileNotFoundException e) {
-            logger.error("Playlist file not found");
-        } catch (IOException e) {
-            logger.error("Playlist error initializing stream");
+    // Playlists are read on first use, a file that cannot be read only costs its own playlist
+    private static Playlist readPlaylist(Path file) throws IOException {
+        ByteBuffer input = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (!StorageCodec.isJavaSerialized(input)) {
+            return library.toPlaylist(StorageCodec.decodePlaylist(input));
+        }
+        try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(input.array()))) {
+            Playlist playlist = library.bind((Playlist) objectIn.readObject());
+            writePlaylist(playlist); // rewrite in the current format
+            return playlist;
         } catch (ClassNotFoundException e) {
-            logger.error("Class not found");
+            throw new IOException("Playlist class not found", e);
         }
     }
 
     @Override
     public boolean addUser(String email, String password) {
-        if (users.containsKey(email)) {
+        if (users.putIfAbsent(email, DigestUtils.sha256Hex(password)) != null) {
             return false;
-        } else {
-            users.put(email, DigestUtils.sha256Hex(password));
-            writeUsers();
-            return true;
         }
+        writeUsers();
+        return true;
     }
 
     @Override
     public void deleteUser(String email) {
-        users.remove(email);
-        writeUsers();
+        if (users.remove(email) != null) {
+            writeUsers();
+        }
     }
 
-    private void writeUsers() {
-        try {
-            FileOutputStream fileOut = new FileOutputStream(USERS_DIR, false);
-            ObjectOutputStream objectOut = new ObjectOutputStream(fileOut);
-            objectOut.writeObject(users);
-            objectOut.close();
-        } catch (FileNotFoundException e) {
-            logger.error("File not found when writing users");
-        } catch (IOException e) {
-            logger.error("Could not write users to file");
-        }
+    // All users live in one file, so a registration storm coalesces into one write per group commit
+    private static void writeUsers() {
+        writeBehind.markDirty(Path.of(USERS_DIR), () -> StorageCodec.encodeUsers(users));
     }
 
     @Override
     public boolean addPlaylist(Playlist playlist) {
-        if (!playlists.contains(playlist)) {
-            playlists.add(playlist);
-            File file = new File(PLAYLISTS_DIR.concat("/").concat(playlist.getName()).concat(".txt"));
-            try {
-                file.createNewFile();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+        Playlist stored = library.bind(playlist);
+        if (playlists.add(stored)) {
+            playlistVersions.changed(stored.getName());
+            writePlaylist(stored);
             return true;
         }
         return false;
@@ -154,81 +112,88 @@ public class InMemoryStorage implements Storage {
     @Override
     public boolean addSongToPlaylist(Playlist playlist, Song song) {
         if (playlist.addSong(song)) {
+            playlistVersions.changed(playlist.getName());
             writePlaylist(playlist);
             return true;
         }
         return false;
     }
 
-    private void writePlaylist(Playlist playlist) {
-        try {
-            String path = PLAYLISTS_DIR.concat("/").concat(playlist.getName()).concat(".txt");
-            FileOutputStream fileOut = new FileOutputStream(path, false);
-            ObjectOutputStream objectOut = new ObjectOutputStream(fileOut);
-            objectOut.writeObject(playlist);
-            objectOut.close();
-        } catch (FileNotFoundException e) {
-            logger.error("File not found when writing playlist");
-        } catch (IOException e) {
-            logger.error("Could not write playlist to file");
-        }
+    private static void writePlaylist(Playlist playlist) {
+        // the songs are read when the write happens, a song added after that marks the playlist dirty again
+        writeBehind.markDirty(playlists.fileOf(playlist.getName()), () ->
+                StorageCodec.encodePlaylist(playlist.getName(), library.songIds(playlist)));
+    }
+
+    @Override
+    public void flush() {
+        writeBehind.flush();
+        library.flush();
+    }
+
+    // The state is static and shared by every instance for the life of the process, so there is nothing to release
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void warmUp() {
+        library.warmUp();
+    }
+
+    @Override
+    public long catalogVersion() {
+        return library.catalogVersion();
+    }
+
+    @Override
+    public long ratingsVersion() {
+        return library.ratingsVersion();
+    }
+
+    @Override
+    public long playlistVersion(String playlistName) {
+        return playlistVersions.version(playlistName);
     }
 
     @Override
     public boolean doesUserExist(String email, String password) {
-        if (!users.containsKey(email)) {
-            return false;
-        } else {
-            return users.get(email).equals(DigestUtils.sha256Hex(password));
-        }
+        String passwordHash = users.get(email);
+        return passwordHash != null && passwordHash.equals(DigestUtils.sha256Hex(password));
     }
 
     @Override
     public Set<Song> getSongs() {
-        return songs;
+        return library.getSongs();
     }
 
     @Override
-    public Song getSongByFullName(String songFullName) {
-        for (Song song : songs) {
-            if (song.getFullName().equals(songFullName)) {
-                return song;
-            }
-        }
-        return null;
+    public List<Song> getTopSongs(int count) {
+        return library.getTopSongs(count);
     }
 
     @Override
-    public void updateSongRating(Song song) {
-        song.incrementRating();
-        writeRating();
+    public List<Song> searchSongs(Collection<String> words, int count) {
+        return library.searchSongs(words, count);
     }
 
-    private void writeRating() {
-        try {
-            FileOutputStream fileOut = new FileOutputStream(SONGS_DIR.concat("Rating.txt"), false);
-            ObjectOutputStream objectOut = new ObjectOutputStream(fileOut);
-            objectOut.writeObject(songs);
-            objectOut.close();
-        } catch (FileNotFoundException e) {
-            logger.error("File not found when writing rating");
-        } catch (IOException e) {
-            logger.error("Could not write rating to file");
-        }
+    @Override
+    public Song getSongByFullName(String songFullName) {
+        return library.getSongByFullName(songFullName);
+    }
+
+    @Override
+    public void updateSongRating(Song song) {
+        library.updateSongRating(song);
     }
 
     @Override
     public Playlist getPlaylistByName(String playlistName) {
-        for (Playlist playlist : playlists) {
-            if (playlist.getName().equals(playlistName)) {
-                return playlist;
-            }
-        }
-        return null;
+        return playlists.get(playlistName);
     }
 
     @Override
     public void addSong(Song song) { // Only used for testing purposes, not good idea, but it is what it is
-        songs.add(song);
+        library.addSong(song);
     }
 }
@@ -0,0 +1,60 @@
+package com.spotify.storage;
+
+import com.spotify.player.Song;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Songs ordered by rating, highest first and by name among equal ratings. A play moves one song in
+// O(log n) and top k walks the first k entries, so nothing is sorted when the top songs are requested.
+class Leaderboard {
+    private static final Comparator<Entry> ORDER = Comparator.comparingInt(Entry::rating).reversed()
+            .thenComparing(entry -> entry.song().getFullName());
+
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>(ORDER);
+
+    void add(Song song) {
+        synchronized (song) {
+            entries.add(new Entry(song, song.getRating()));
+        }
+    }
+
+    // Plays of the same song are serialized so its entry always matches its rating once they finish.
+    // The new entry is added before the old one is removed, so readers never miss the song meanwhile.
+    int incrementRating(Song song) {
+        synchronized (song) {
+            int rating = song.incrementRating();
+            entries.add(new Entry(song, rating));
+            entries.remove(new Entry(song, rating - 1));
+            return rating;
+        }
+    }
+
+    List<Song> top(int k) {
+        List<Song> top = new ArrayList<>(Math.min(k, entries.size()));
+        Set<Song> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Entry entry : entries) {
+            if (top.size() == k) {
+                break;
+            }
+            if (seen.add(entry.song())) { // a song being moved is briefly listed under both ratings
+                top.add(entry.song());
+            }
+        }
+        return top;
+    }
+
+    // Songs from the highest rating down, each with the rating it is ordered by. A song being moved may be
+    // listed twice.
+    Iterable<Entry> byRating() {
+        return entries;
+    }
+
+    record Entry(Song song, int rating) {
+    }
+}
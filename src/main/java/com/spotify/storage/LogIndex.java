@@ -0,0 +1,113 @@
+package com.spotify.storage;
+
+import java.io.IOException;
+
+// Index of a LogStore: an open addressing table from 64-bit key hashes to the location and size of each
+// key's latest record. It is kept in primitive arrays, so an entry costs 20 bytes of heap and millions of
+// keys fit where a HashMap of keys would not. Keys that share a hash are told apart by the caller, who
+// compares the key stored in the record.
+class LogIndex {
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long FREE = 0;
+
+    private long[] hashes = new long[INITIAL_CAPACITY];
+    private long[] locations = new long[INITIAL_CAPACITY]; // location + 1, so FREE marks an empty slot
+    private int[] sizes = new int[INITIAL_CAPACITY];
+    private int count = 0;
+
+    interface KeyCheck {
+        boolean isKey(long location, int size) throws IOException;
+    }
+
+    // The slot of the key the check accepts, -1 when the key is not indexed
+    int find(long hash, KeyCheck check) throws IOException {
+        int mask = hashes.length - 1;
+        for (int slot = home(hash, mask); locations[slot] != FREE; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && check.isKey(locations[slot] - 1, sizes[slot])) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    // The slot that points at exactly this record, -1 when the record is no longer the latest of its key
+    int findLocation(long hash, long location) {
+        int mask = hashes.length - 1;
+        for (int slot = home(hash, mask); locations[slot] != FREE; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && locations[slot] - 1 == location) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    long location(int slot) {
+        return locations[slot] - 1;
+    }
+
+    int size(int slot) {
+        return sizes[slot];
+    }
+
+    int count() {
+        return count;
+    }
+
+    void update(int slot, long location, int size) {
+        locations[slot] = location + 1;
+        sizes[slot] = size;
+    }
+
+    void insert(long hash, long location, int size) {
+        if ((count + 1) * 2 > hashes.length) {
+            grow();
+        }
+        place(hash, location + 1, size);
+        count++;
+    }
+
+    // Backward shift deletion: later entries of the probe run move up, so lookups never need tombstones
+    void remove(int slot) {
+        int mask = hashes.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; locations[next] != FREE; next = (next + 1) & mask) {
+            if (((next - home(hashes[next], mask)) & mask) >= ((next - hole) & mask)) {
+                hashes[hole] = hashes[next];
+                locations[hole] = locations[next];
+                sizes[hole] = sizes[next];
+                hole = next;
+            }
+        }
+        locations[hole] = FREE;
+        count--;
+    }
+
+    private void grow() {
+        long[] oldHashes = hashes;
+        long[] oldLocations = locations;
+        int[] oldSizes = sizes;
+        hashes = new long[oldHashes.length * 2];
+        locations = new long[oldHashes.length * 2];
+        sizes = new int[oldHashes.length * 2];
+        for (int slot = 0; slot < oldHashes.length; slot++) {
+            if (oldLocations[slot] != FREE) {
+                place(oldHashes[slot], oldLocations[slot], oldSizes[slot]);
+            }
+        }
+    }
+
+    private void place(long hash, long storedLocation, int size) {
+        int mask = hashes.length - 1;
+        int slot = home(hash, mask);
+        while (locations[slot] != FREE) {
+            slot = (slot + 1) & mask;
+        }
+        hashes[slot] = hash;
+        locations[slot] = storedLocation;
+        sizes[slot] = size;
+    }
+
+    private static int home(long hash, int mask) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,628 @@
+package com.spotify.storage;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// An embedded log-structured key value store. Puts and deletes are appended to the active segment file and
+// a LogIndex maps every key to its latest record, so a read is one positioned read and the heap only holds
+// the index and a byte-bounded cache of recently used values. A full segment is sealed and a new one is
+// started. When more than half of the sealed bytes belong to overwritten or deleted records, a background
+// merge copies the live records of all sealed segments into one segment that replaces them; its header
+// names the oldest segment it covers, so segments left behind by a crash during a merge are dropped when
+// the store is opened again. Recovery replays the remaining segments in order and cuts off a torn tail.
+class LogStore implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(LogStore.class);
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String MERGE_SUFFIX = ".merge";
+    private static final int SEGMENT_MAGIC = 0x53504C53; // SPLS
+    private static final int SEGMENT_HEADER_SIZE = Integer.BYTES * 2;
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + Short.BYTES + Integer.BYTES;
+    private static final int DELETED = -1;
+    private static final int OFFSET_BITS = 40;
+    private static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+    private static final int SCAN_BUFFER_SIZE = 1 << 20;
+    private static final long BACKGROUND_INTERVAL_MILLIS = 100;
+
+    private final Path directory;
+    private final PersistenceMode mode;
+    private final long segmentBytes;
+    private final ValueCache cache;
+    private final LogIndex index = new LogIndex();
+    private final NavigableMap<Integer, Segment> segments = new TreeMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object mergeLock = new Object(); // one merge at a time, they would share their output file
+    private final ScheduledExecutorService background = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "spotify-log-store");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Segment active;
+
+    LogStore(Path directory, PersistenceMode mode, long segmentBytes, long cacheBytes) throws IOException {
+        this.directory = directory;
+        this.mode = mode;
+        this.segmentBytes = segmentBytes;
+        this.cache = new ValueCache(cacheBytes);
+        recover();
+        background.scheduleWithFixedDelay(this::maintain, BACKGROUND_INTERVAL_MILLIS, BACKGROUND_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    byte[] get(String key) throws IOException {
+        lock.readLock().lock();
+        try {
+            byte[] value = cache.get(key);
+            if (value == null) {
+                value = read(key.getBytes(StandardCharsets.UTF_8));
+                if (value != null) {
+                    cache.put(key, value); // under the read lock, so a newer put cannot be overtaken
+                }
+            }
+            return value;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void put(String key, byte[] value) throws IOException {
+        update(key, current -> value);
+    }
+
+    // Returns false and leaves the stored value when the key already has one
+    boolean putIfAbsent(String key, byte[] value) throws IOException {
+        return update(key, current -> current == null ? value : null);
+    }
+
+    boolean delete(String key) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long hash = hash(keyBytes);
+        lock.writeLock().lock();
+        try {
+            int slot = index.find(hash, (location, size) -> isKey(readRecord(location, size), keyBytes));
+            if (slot < 0) {
+                return false;
+            }
+            append(keyBytes, null);
+            markDead(index.location(slot), index.size(slot));
+            index.remove(slot);
+            cache.remove(key);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Atomic read-modify-write: change gets the current value, or null, and returns the new value, or null
+    // to leave the key as it is. Returns true when a new value was written.
+    boolean update(String key, UnaryOperator<byte[]> change) throws IOException {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long hash = hash(keyBytes);
+        lock.writeLock().lock();
+        try {
+            ByteBuffer[] current = new ByteBuffer[1];
+            int slot = index.find(hash, (location, size) -> {
+                current[0] = readRecord(location, size);
+                return isKey(current[0], keyBytes);
+            });
+            byte[] value = change.apply(slot < 0 ? null : valueOf(current[0]));
+            if (value == null) {
+                return false;
+            }
+            long location = append(keyBytes, value);
+            int size = RECORD_HEADER_SIZE + keyBytes.length + value.length;
+            if (slot < 0) {
+                index.insert(hash, location, size);
+            } else {
+                markDead(index.location(slot), index.size(slot));
+                index.update(slot, location, size);
+            }
+            cache.put(key, value);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return index.count();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Blocks until everything written so far is on disk
+    void flush() {
+        Segment segment;
+        lock.readLock().lock();
+        try {
+            segment = active; // a segment is forced when it is sealed, so only the active one can be behind
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            segment.channel.force(false);
+        } catch (IOException e) {
+            logger.error("Could not flush the log store");
+        }
+    }
+
+    @Override
+    public void close() {
+        background.shutdown();
+        try {
+            background.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+        } catch (IOException e) {
+            logger.error("Could not close the log store");
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Copies the live records of every sealed segment into one segment and deletes the others
+    void merge() throws IOException {
+        synchronized (mergeLock) {
+            mergeSealed();
+        }
+    }
+
+    private void mergeSealed() throws IOException {
+        List<Segment> sealed;
+        lock.readLock().lock();
+        try {
+            sealed = new ArrayList<>(segments.headMap(active.id).values());
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (sealed.isEmpty()) {
+            return;
+        }
+
+        Segment last = sealed.get(sealed.size() - 1);
+        Path temp = directory.resolve(SEGMENT_PREFIX + last.id + MERGE_SUFFIX);
+        FileChannel output = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        Segment merged = new Segment(last.id, sealed.get(0).firstCovered, output);
+        List<long[]> moves = new ArrayList<>();
+        try {
+            copyLiveRecords(sealed, merged, moves);
+        } catch (IOException | RuntimeException e) {
+            output.close();
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (long[] move : moves) {
+                int slot = index.findLocation(move[0], move[1]);
+                if (slot >= 0) {
+                    index.update(slot, location(merged.id, move[2]), (int) move[3]);
+                } else {
+                    merged.deadBytes += move[3]; // overwritten while the merge was running
+                }
+            }
+            Files.move(temp, segmentPath(merged.id), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            for (Segment segment : sealed) {
+                segment.channel.close();
+                segments.remove(segment.id);
+                if (segment.id != merged.id) {
+                    Files.deleteIfExists(segmentPath(segment.id));
+                }
+            }
+            segments.put(merged.id, merged);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Sealed segments never change, only the index is read under the lock. Each move is the key hash, the
+    // old location, the new offset and the size of a copied record.
+    private void copyLiveRecords(List<Segment> sealed, Segment merged, List<long[]> moves) throws IOException {
+        writeHeader(merged);
+        for (Segment segment : sealed) {
+            scan(segment, (offset, record) -> {
+                if (record.getInt(Integer.BYTES + Short.BYTES) == DELETED) {
+                    return; // every older record of the key is part of this merge
+                }
+                long hash = hash(keyOf(record));
+                long location = location(segment.id, offset);
+                lock.readLock().lock();
+                try {
+                    if (index.findLocation(hash, location) < 0) {
+                        return;
+                    }
+                } finally {
+                    lock.readLock().unlock();
+                }
+                moves.add(new long[]{hash, location, merged.size, record.remaining()});
+                merged.size += writeFully(merged.channel, record, merged.size);
+            });
+        }
+        merged.channel.force(true);
+    }
+
+    private void maintain() {
+        try {
+            if (mode == PersistenceMode.BATCHED) {
+                flush();
+            }
+            if (shouldMerge()) {
+                merge();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Could not merge the log store segments");
+        }
+    }
+
+    private boolean shouldMerge() {
+        lock.readLock().lock();
+        try {
+            long bytes = 0;
+            long deadBytes = 0;
+            for (Segment segment : segments.headMap(active.id).values()) {
+                bytes += segment.size - SEGMENT_HEADER_SIZE;
+                deadBytes += segment.deadBytes;
+            }
+            return deadBytes > 0 && deadBytes * 2 >= bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private byte[] read(byte[] key) throws IOException {
+        ByteBuffer[] found = new ByteBuffer[1];
+        int slot = index.find(hash(key), (location, size) -> {
+            found[0] = readRecord(location, size);
+            return isKey(found[0], key);
+        });
+        return slot < 0 ? null : valueOf(found[0]);
+    }
+
+    // Appends a record, a null value records a delete. Called with the write lock held.
+    private long append(byte[] key, byte[] value) throws IOException {
+        ByteBuffer record = encode(key, value);
+        if (active.size + record.remaining() > segmentBytes && active.size > SEGMENT_HEADER_SIZE) {
+            roll();
+        }
+        long location = location(active.id, active.size);
+        int size = writeFully(active.channel, record, active.size);
+        active.size += size;
+        if (value == null) {
+            active.deadBytes += size; // a delete is only needed until the records it hides are merged away
+        }
+        if (mode == PersistenceMode.SYNC) {
+            active.channel.force(false);
+        }
+        return location;
+    }
+
+    private void roll() throws IOException {
+        active.channel.force(false);
+        active = openSegment(active.id + 1);
+        segments.put(active.id, active);
+    }
+
+    private void markDead(long location, int size) {
+        Segment segment = segments.get(segmentOf(location));
+        if (segment != null) {
+            segment.deadBytes += size;
+        }
+    }
+
+    private ByteBuffer readRecord(long location, int size) throws IOException {
+        Segment segment = segments.get(segmentOf(location));
+        ByteBuffer record = ByteBuffer.allocate(size);
+        long position = location & OFFSET_MASK;
+        while (record.hasRemaining()) {
+            if (segment.channel.read(record, position + record.position()) < 0) {
+                throw new IOException("Record past the end of segment " + segment.id);
+            }
+        }
+        record.flip();
+        if (record.getInt(0) != checksum(record)) {
+            throw new IOException("Corrupted record in segment " + segment.id);
+        }
+        return record;
+    }
+
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        List<Integer> ids = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(MERGE_SUFFIX)) {
+                    Files.delete(file); // a merge that did not finish
+                } else if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    ids.add(Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())));
+                }
+            }
+        }
+        ids.sort(null);
+
+        int coveredFrom = Integer.MAX_VALUE;
+        for (int i = ids.size() - 1; i >= 0; i--) {
+            int id = ids.get(i);
+            if (id >= coveredFrom) {
+                Files.delete(segmentPath(id)); // already copied into a merged segment
+                continue;
+            }
+            FileChannel channel = FileChannel.open(segmentPath(id), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() == 0) {
+                channel.close();
+                Files.delete(segmentPath(id)); // created just before a crash
+                continue;
+            }
+            ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+            channel.read(header, 0);
+            if (header.position() < SEGMENT_HEADER_SIZE || header.getInt(0) != SEGMENT_MAGIC) {
+                channel.close();
+                throw new IOException("Not a log store segment " + segmentPath(id));
+            }
+            Segment segment = new Segment(id, header.getInt(Integer.BYTES), channel);
+            segment.size = channel.size();
+            segments.put(id, segment);
+            coveredFrom = Math.min(coveredFrom, segment.firstCovered);
+        }
+
+        for (Segment segment : segments.values()) {
+            long end = scan(segment, (offset, record) -> replay(segment, offset, record));
+            if (end < segment.size) {
+                logger.error("Discarding a torn record at the end of segment " + segment.id);
+                segment.channel.truncate(end);
+                segment.size = end;
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(0, openSegment(0));
+        }
+        active = segments.lastEntry().getValue();
+    }
+
+    private void replay(Segment segment, long offset, ByteBuffer record) throws IOException {
+        byte[] key = keyOf(record);
+        long hash = hash(key);
+        int slot = index.find(hash, (location, size) -> isKey(readRecord(location, size), key));
+        if (slot >= 0) {
+            markDead(index.location(slot), index.size(slot));
+        }
+        if (record.getInt(Integer.BYTES + Short.BYTES) == DELETED) {
+            segment.deadBytes += record.remaining();
+            if (slot >= 0) {
+                index.remove(slot);
+            }
+        } else if (slot >= 0) {
+            index.update(slot, location(segment.id, offset), record.remaining());
+        } else {
+            index.insert(hash, location(segment.id, offset), record.remaining());
+        }
+    }
+
+    private interface RecordVisitor {
+        void visit(long offset, ByteBuffer record) throws IOException;
+    }
+
+    // Visits the complete records of a segment in order and returns the offset where they end
+    private long scan(Segment segment, RecordVisitor visitor) throws IOException {
+        long end = segment.channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE).flip();
+        long offset = SEGMENT_HEADER_SIZE; // the segment offset of the buffer position
+        while (true) {
+            int size = buffer.remaining() < RECORD_HEADER_SIZE ? RECORD_HEADER_SIZE : recordSize(buffer);
+            if (size < RECORD_HEADER_SIZE || offset + size > end) {
+                return offset;
+            }
+            if (buffer.remaining() < size) {
+                if (size > buffer.capacity()) {
+                    buffer = ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2)).put(buffer);
+                } else {
+                    buffer.compact();
+                }
+                segment.channel.read(buffer, offset + buffer.position());
+                buffer.flip();
+                continue;
+            }
+            ByteBuffer record = buffer.slice(buffer.position(), size);
+            if (record.getInt(0) != checksum(record)) {
+                return offset;
+            }
+            visitor.visit(offset, record);
+            buffer.position(buffer.position() + size);
+            offset += size;
+        }
+    }
+
+    // The size of the record whose header is at the buffer position, 0 when the header is not valid
+    private static int recordSize(ByteBuffer buffer) {
+        int keyLength = Short.toUnsignedInt(buffer.getShort(buffer.position() + Integer.BYTES));
+        int valueLength = buffer.getInt(buffer.position() + Integer.BYTES + Short.BYTES);
+        if (valueLength < DELETED) {
+            return 0;
+        }
+        return RECORD_HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+    }
+
+    private Segment openSegment(int id) throws IOException {
+        FileChannel channel = FileChannel.open(segmentPath(id), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        Segment segment = new Segment(id, id, channel);
+        writeHeader(segment);
+        return segment;
+    }
+
+    private static void writeHeader(Segment segment) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE).putInt(SEGMENT_MAGIC).putInt(segment.firstCovered);
+        segment.size = writeFully(segment.channel, header.flip(), 0);
+    }
+
+    private Path segmentPath(int id) {
+        return directory.resolve(SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+    }
+
+    // [crc:int][key length:short][value length:int, -1 for a delete][key][value]
+    private static ByteBuffer encode(byte[] key, byte[] value) {
+        int valueLength = value == null ? 0 : value.length;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + key.length + valueLength);
+        record.putInt(0).putShort((short) key.length).putInt(value == null ? DELETED : value.length).put(key);
+        if (value != null) {
+            record.put(value);
+        }
+        record.flip();
+        record.putInt(0, checksum(record));
+        return record;
+    }
+
+    private static int checksum(ByteBuffer record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.slice(Integer.BYTES, record.limit() - Integer.BYTES));
+        return (int) crc.getValue();
+    }
+
+    private static byte[] keyOf(ByteBuffer record) {
+        byte[] key = new byte[Short.toUnsignedInt(record.getShort(Integer.BYTES))];
+        record.get(RECORD_HEADER_SIZE, key);
+        return key;
+    }
+
+    private static boolean isKey(ByteBuffer record, byte[] key) {
+        return Short.toUnsignedInt(record.getShort(Integer.BYTES)) == key.length
+                && Arrays.equals(keyOf(record), key);
+    }
+
+    private static byte[] valueOf(ByteBuffer record) {
+        int valueLength = record.getInt(Integer.BYTES + Short.BYTES);
+        if (valueLength == DELETED) {
+            return null;
+        }
+        byte[] value = new byte[valueLength];
+        record.get(RECORD_HEADER_SIZE + Short.toUnsignedInt(record.getShort(Integer.BYTES)), value);
+        return value;
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int size = buffer.remaining();
+        int written = 0;
+        while (written < size) {
+            written += channel.write(buffer, position + written);
+        }
+        return size;
+    }
+
+    // FNV-1a with a final avalanche, so the low bits used for the index slot depend on every byte
+    private static long hash(byte[] key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static long location(int segment, long offset) {
+        return ((long) segment << OFFSET_BITS) | offset;
+    }
+
+    private static int segmentOf(long location) {
+        return (int) (location >>> OFFSET_BITS);
+    }
+
+    private static class Segment {
+        private final int id;
+        private final int firstCovered;
+        private final FileChannel channel;
+        private long size;
+        private long deadBytes = 0;
+
+        Segment(int id, int firstCovered, FileChannel channel) {
+            this.id = id;
+            this.firstCovered = firstCovered;
+            this.channel = channel;
+        }
+    }
+
+    // Least recently used values within a byte budget
+    private static class ValueCache {
+        private static final int ENTRY_OVERHEAD = 64;
+
+        private final long budget;
+        private final LinkedHashMap<String, byte[]> values = new LinkedHashMap<>(16, 0.75f, true);
+        private long bytes = 0;
+
+        ValueCache(long budget) {
+            this.budget = budget;
+        }
+
+        synchronized byte[] get(String key) {
+            return values.get(key);
+        }
+
+        synchronized void put(String key, byte[] value) {
+            remove(key);
+            long cost = cost(key, value);
+            if (cost > budget) {
+                return;
+            }
+            values.put(key, value);
+            bytes += cost;
+            Iterator<Map.Entry<String, byte[]>> eldest = values.entrySet().iterator();
+            while (bytes > budget) {
+                Map.Entry<String, byte[]> entry = eldest.next();
+                bytes -= cost(entry.getKey(), entry.getValue());
+                eldest.remove();
+            }
+        }
+
+        synchronized void remove(String key) {
+            byte[] value = values.remove(key);
+            if (value != null) {
+                bytes -= cost(key, value);
+            }
+        }
+
+        private static long cost(String key, byte[] value) {
+            return ENTRY_OVERHEAD + key.length() * 2L + value.length;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.spotify.storage;
+
+import com.spotify.player.Playlist;
+import com.spotify.player.Song;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Storage whose users and playlists live in a LogStore, so their number is bounded by the disk and not by
+// the heap. Every change is one appended record instead of a rewritten file. The songs side is a SongLibrary
+// like the one InMemoryStorage uses, with its catalog snapshot and play log kept in the same directory.
+public class LogStructuredStorage implements Storage {
+    private static final Logger logger = LogManager.getLogger(LogStructuredStorage.class);
+    private static final String STORE_DIR = "src/main/resources/Store";
+    private static final String USER_PREFIX = "user:";
+    private static final String PLAYLIST_PREFIX = "playlist:";
+    private static final long SEGMENT_BYTES = 64L << 20;
+    private static final long CACHE_BYTES = 32L << 20;
+    private static final int WRITE_BEHIND_MAX_PENDING = 256;
+    private static final long WRITE_BEHIND_FLUSH_INTERVAL_MILLIS = 100;
+
+    private final LogStore store;
+    private final WriteBehind writeBehind;
+    private final SongLibrary library;
+    private final PlaylistVersions playlistVersions = new PlaylistVersions();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public LogStructuredStorage() {
+        this(Path.of(STORE_DIR));
+    }
+
+    public LogStructuredStorage(Path directory) {
+        PersistenceMode mode = PersistenceMode.configured();
+        try {
+            this.store = new LogStore(directory, mode, SEGMENT_BYTES, CACHE_BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the log store", e);
+        }
+        this.writeBehind = new WriteBehind(mode, WRITE_BEHIND_MAX_PENDING, WRITE_BEHIND_FLUSH_INTERVAL_MILLIS);
+        this.library = new SongLibrary(directory, writeBehind);
+    }
+
+    @Override
+    public boolean addUser(String email, String password) {
+        try {
+            return store.putIfAbsent(USER_PREFIX + email, DigestUtils.sha256(password));
+        } catch (IOException e) {
+            logger.error("Could not store user");
+            return false;
+        }
+    }
+
+    @Override
+    public void deleteUser(String email) {
+        try {
+            store.delete(USER_PREFIX + email);
+        } catch (IOException e) {
+            logger.error("Could not delete user");
+        }
+    }
+
+    @Override
+    public boolean doesUserExist(String email, String password) {
+        try {
+            byte[] passwordHash = store.get(USER_PREFIX + email);
+            return passwordHash != null && Arrays.equals(passwordHash, DigestUtils.sha256(password));
+        } catch (IOException e) {
+            logger.error("Could not read user");
+            return false;
+        }
+    }
+
+    @Override
+    public boolean addPlaylist(Playlist playlist) {
+        try {
+            boolean added = store.putIfAbsent(PLAYLIST_PREFIX + playlist.getName(),
+                    bytes(StorageCodec.encodePlaylist(playlist.getName(), library.songIds(playlist))));
+            if (added) {
+                playlistVersions.changed(playlist.getName());
+            }
+            return added;
+        } catch (IOException e) {
+            logger.error("Could not store playlist " + playlist.getName());
+            return false;
+        }
+    }
+
+    // The stored playlist is changed under the store's lock, so concurrent additions are never lost
+    @Override
+    public boolean addSongToPlaylist(Playlist playlist, Song song) {
+        int songId = library.songId(song);
+        if (songId == SongCatalog.UNKNOWN) {
+            return false;
+        }
+        try {
+            boolean added = store.update(PLAYLIST_PREFIX + playlist.getName(), current -> {
+                if (current == null) {
+                    return null;
+                }
+                StorageCodec.PlaylistRecord record = decode(current);
+                if (Arrays.stream(record.songIds()).anyMatch(id -> id == songId)) {
+                    return null;
+                }
+                int[] songIds = Arrays.copyOf(record.songIds(), record.songIds().length + 1);
+                songIds[songIds.length - 1] = songId;
+                return bytes(StorageCodec.encodePlaylist(record.name(), songIds));
+            });
+            if (added) {
+                playlist.addSong(song);
+                playlistVersions.changed(playlist.getName());
+            }
+            return added;
+        } catch (IOException | UncheckedIOException e) {
+            logger.error("Could not add song to playlist " + playlist.getName());
+            return false;
+        }
+    }
+
+    // Every call decodes a fresh copy, changes go through addSongToPlaylist
+    @Override
+    public Playlist getPlaylistByName(String playlistName) {
+        try {
+            byte[] value = store.get(PLAYLIST_PREFIX + playlistName);
+            return value == null ? null : library.toPlaylist(StorageCodec.decodePlaylist(ByteBuffer.wrap(value)));
+        } catch (IOException e) {
+            logger.error("Could not read playlist " + playlistName);
+            return null;
+        }
+    }
+
+    @Override
+    public Set<Song> getSongs() {
+        return library.getSongs();
+    }
+
+    @Override
+    public List<Song> searchSongs(Collection<String> words, int count) {
+        return library.searchSongs(words, count);
+    }
+
+    @Override
+    public List<Song> getTopSongs(int count) {
+        return library.getTopSongs(count);
+    }
+
+    @Override
+    public Song getSongByFullName(String songFullName) {
+        return library.getSongByFullName(songFullName);
+    }
+
+    @Override
+    public void updateSongRating(Song song) {
+        library.updateSongRating(song);
+    }
+
+    @Override
+    public void addSong(Song song) {
+        library.addSong(song);
+    }
+
+    @Override
+    public void warmUp() {
+        library.warmUp();
+    }
+
+    @Override
+    public long catalogVersion() {
+        return library.catalogVersion();
+    }
+
+    @Override
+    public long ratingsVersion() {
+        return library.ratingsVersion();
+    }
+
+    @Override
+    public long playlistVersion(String playlistName) {
+        return playlistVersions.version(playlistName);
+    }
+
+    @Override
+    public void flush() {
+        if (closed.get()) {
+            return;
+        }
+        store.flush();
+        writeBehind.flush();
+        library.flush();
+    }
+
+    // The server closes both from its shutdown hook and when it stops, only the first call does anything
+    @Override
+    public void close() {
+        flush();
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        store.close();
+        writeBehind.close();
+        library.close();
+    }
+
+    private static StorageCodec.PlaylistRecord decode(byte[] value) {
+        try {
+            return StorageCodec.decodePlaylist(ByteBuffer.wrap(value));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
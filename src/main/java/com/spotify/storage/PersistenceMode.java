@@ -0,0 +1,14 @@
+package com.spotify.storage;
+
+public enum PersistenceMode {
+    // the change is on disk before the request returns, concurrent changes still share one group commit
+    SYNC,
+    // the change is written by the next group commit, at most one flush interval later
+    BATCHED;
+
+    private static final String PROPERTY = "spotify.persistence";
+
+    public static PersistenceMode configured() {
+        return valueOf(System.getProperty(PROPERTY, BATCHED.name()).toUpperCase());
+    }
+}
@@ -0,0 +1,342 @@
+package com.spotify.storage;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Durable song ratings as an append-only log of plays. A play is queued in memory and written with the
+// other plays of the same interval in one write and one fsync. Once a log holds enough plays, writing
+// moves on to the next numbered log and the ratings are compacted into a snapshot naming that log as
+// its start. The snapshot it replaces is kept as the previous one, together with the logs after it, so an
+// unreadable snapshot can be rebuilt from the previous one; older logs are deleted. Recovery loads the
+// snapshot and replays the logs after it.
+class PlayLog implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(PlayLog.class);
+    private static final String LOG_PREFIX = "plays-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final String SNAPSHOT = "ratings.snapshot";
+    private static final String SNAPSHOT_TEMP = "ratings.snapshot.tmp";
+    private static final String SNAPSHOT_PREVIOUS = "ratings.snapshot.previous";
+    private static final String SNAPSHOT_CORRUPT = "ratings.snapshot.corrupt";
+    private static final int SNAPSHOT_MAGIC = 0x52415431;
+    private static final int RECORD_OVERHEAD = Integer.BYTES + Short.BYTES + Long.BYTES;
+    private static final int MAX_BATCH = 4096;
+
+    private final Path directory;
+    private final long flushIntervalMillis;
+    private final long compactAfterPlays;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "spotify-play-log");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private List<Play> pending = new ArrayList<>();
+
+    // Owned by the flusher thread: the ratings exactly as the snapshot and the current log describe them
+    private final Map<String, Integer> persisted = new HashMap<>();
+    private FileChannel log;
+    private long generation;
+    private long playsInLog = 0;
+    private long snapshotStart = -1; // the first log after the current snapshot, -1 while there is none
+
+    PlayLog(Path directory, long flushIntervalMillis, long compactAfterPlays) {
+        this.directory = directory;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.compactAfterPlays = compactAfterPlays;
+    }
+
+    // Loads the ratings and starts logging, legacyRatings are used when there is no log yet
+    Map<String, Integer> open(Supplier<Map<String, Integer>> legacyRatings) throws IOException {
+        Files.createDirectories(directory);
+        List<Long> generations = logGenerations();
+        if (!loadSnapshot()) {
+            if (generations.isEmpty()) {
+                persisted.putAll(legacyRatings.get());
+                generation = 0;
+                writeSnapshot(generation);
+            } else {
+                generation = generations.get(0);
+            }
+        }
+
+        for (long logGeneration : generations) {
+            if (logGeneration >= generation) { // older logs are part of the snapshot and go at the next compaction
+                replay(logGeneration);
+                generation = logGeneration;
+            }
+        }
+        log = FileChannel.open(logPath(generation), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        flusher.scheduleWithFixedDelay(this::commit, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        return new HashMap<>(persisted);
+    }
+
+    void append(String songName) {
+        boolean full;
+        synchronized (this) {
+            pending.add(new Play(songName, System.currentTimeMillis()));
+            full = pending.size() == MAX_BATCH;
+        }
+        if (full) {
+            flusher.execute(this::commit);
+        }
+    }
+
+    // Blocks until every play appended so far is on disk
+    void flush() {
+        try {
+            if (!flusher.submit(this::commit).get()) {
+                logger.error("Could not flush the play log, the plays are kept for the next attempt");
+            }
+        } catch (Exception e) {
+            logger.error("Could not flush the play log");
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        flusher.shutdown();
+        if (log == null) {
+            return; // open failed
+        }
+        try {
+            log.close();
+        } catch (IOException e) {
+            logger.error("Could not close the play log");
+        }
+    }
+
+    // Returns false when the plays could not be written, they stay queued ahead of later plays
+    private boolean commit() {
+        List<Play> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return true;
+            }
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+        try {
+            write(batch);
+        } catch (IOException e) {
+            logger.error("Could not write plays to the play log");
+            synchronized (this) {
+                batch.addAll(pending);
+                pending = batch;
+            }
+            return false;
+        }
+        try {
+            if (playsInLog >= compactAfterPlays) {
+                compact();
+            }
+        } catch (IOException e) {
+            logger.error("Could not compact the play log");
+        }
+        return true;
+    }
+
+    // The plays count only once they are forced to disk. A failed write is cut off the log again, so the
+    // retry does not log the same plays twice.
+    private void write(List<Play> batch) throws IOException {
+        if (log == null) {
+            throw new IOException("The play log is not open");
+        }
+        ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = encode(batch.get(i));
+        }
+        long logSize = log.size();
+        try {
+            while (buffers[buffers.length - 1].hasRemaining()) {
+                log.write(buffers);
+            }
+            log.force(false);
+        } catch (IOException e) {
+            try {
+                log.truncate(logSize);
+            } catch (IOException truncateFailure) {
+                logger.error("Could not cut a failed write off the play log");
+            }
+            throw e;
+        }
+        for (Play play : batch) {
+            persisted.merge(play.songName, 1, Integer::sum);
+        }
+        playsInLog += batch.size();
+    }
+
+    private void compact() throws IOException {
+        long next = generation + 1;
+        FileChannel nextLog = FileChannel.open(logPath(next), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        log.close();
+        log = nextLog;
+        generation = next;
+        playsInLog = 0;
+
+        long previousStart = snapshotStart;
+        writeSnapshot(next);
+        for (long logGeneration : logGenerations()) {
+            if (logGeneration < previousStart) { // not needed to rebuild from the previous snapshot
+                Files.deleteIfExists(logPath(logGeneration));
+            }
+        }
+    }
+
+    // Loads the snapshot, or the previous one when the snapshot cannot be read. The previous one also
+    // stands in when a crash came between moving the snapshot aside and putting the new one in place.
+    // Returns false when there is no snapshot yet.
+    private boolean loadSnapshot() throws IOException {
+        Path snapshot = directory.resolve(SNAPSHOT);
+        Path previous = directory.resolve(SNAPSHOT_PREVIOUS);
+        if (Files.exists(snapshot)) {
+            try {
+                generation = readSnapshot(snapshot);
+                snapshotStart = generation;
+                return true;
+            } catch (IOException e) {
+                persisted.clear();
+                if (!Files.exists(previous)) {
+                    throw new IOException("No readable ratings snapshot in " + directory, e);
+                }
+                logger.error("Could not read the ratings snapshot, rebuilding it from the previous one");
+                Files.move(snapshot, directory.resolve(SNAPSHOT_CORRUPT), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } else if (!Files.exists(previous)) {
+            return false;
+        }
+        generation = readSnapshot(previous);
+        Files.move(previous, snapshot, StandardCopyOption.ATOMIC_MOVE);
+        snapshotStart = generation;
+        return true;
+    }
+
+    private void writeSnapshot(long startGeneration) throws IOException {
+        Map<byte[], Integer> ratings = new HashMap<>();
+        int size = Integer.BYTES * 2 + Long.BYTES * 2;
+        for (Map.Entry<String, Integer> entry : persisted.entrySet()) {
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            ratings.put(name, entry.getValue());
+            size += Short.BYTES + name.length + Integer.BYTES;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(SNAPSHOT_MAGIC).putLong(startGeneration).putInt(ratings.size());
+        ratings.forEach((name, rating) -> buffer.putShort((short) name.length).put(name).putInt(rating));
+        buffer.putLong(checksum(buffer.array(), 0, buffer.position()));
+        buffer.flip();
+
+        Path temp = directory.resolve(SNAPSHOT_TEMP);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Path snapshot = directory.resolve(SNAPSHOT);
+        if (snapshotStart >= 0) {
+            Files.move(snapshot, directory.resolve(SNAPSHOT_PREVIOUS), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        snapshotStart = startGeneration;
+    }
+
+    private long readSnapshot(Path snapshot) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(snapshot));
+        int end = buffer.limit() - Long.BYTES;
+        if (end < 0 || buffer.getInt() != SNAPSHOT_MAGIC || buffer.getLong(end) != checksum(buffer.array(), 0, end)) {
+            throw new IOException("Corrupted ratings snapshot " + snapshot);
+        }
+        long startGeneration = buffer.getLong();
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[Short.toUnsignedInt(buffer.getShort())];
+            buffer.get(name);
+            persisted.put(new String(name, StandardCharsets.UTF_8), buffer.getInt());
+        }
+        return startGeneration;
+    }
+
+    // Applies every complete record of a log, a torn record at the end left by a crash is cut off
+    private void replay(long logGeneration) throws IOException {
+        Path path = logPath(logGeneration);
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        long plays = 0;
+        while (buffer.remaining() >= RECORD_OVERHEAD) {
+            int start = buffer.position();
+            int crc = buffer.getInt();
+            int length = Short.toUnsignedInt(buffer.getShort());
+            if (buffer.remaining() < length + Long.BYTES
+                    || crc != (int) checksum(buffer.array(), start + Integer.BYTES, Short.BYTES + length + Long.BYTES)) {
+                buffer.position(start);
+                break;
+            }
+            byte[] name = new byte[length];
+            buffer.get(name);
+            buffer.getLong(); // the time of the play is kept for auditing, ratings only count plays
+            persisted.merge(new String(name, StandardCharsets.UTF_8), 1, Integer::sum);
+            plays++;
+        }
+        if (buffer.hasRemaining()) {
+            logger.error("Discarding a torn record at the end of " + path);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(buffer.position());
+            }
+        }
+        playsInLog = plays;
+    }
+
+    private List<Long> logGenerations() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(LOG_PREFIX) && name.endsWith(LOG_SUFFIX))
+                    .forEach(name -> generations.add(Long.parseLong(
+                            name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length()))));
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    private Path logPath(long logGeneration) {
+        return directory.resolve(LOG_PREFIX + logGeneration + LOG_SUFFIX);
+    }
+
+    private static ByteBuffer encode(Play play) {
+        byte[] name = play.songName.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + name.length);
+        record.putInt(0).putShort((short) name.length).put(name).putLong(play.timestamp);
+        record.putInt(0, (int) checksum(record.array(), Integer.BYTES, record.capacity() - Integer.BYTES));
+        return record.flip();
+    }
+
+    private static long checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return crc.getValue();
+    }
+
+    private record Play(String songName, long timestamp) {
+    }
+}
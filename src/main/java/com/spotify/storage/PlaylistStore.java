@@ -0,0 +1,111 @@
+package com.spotify.storage;
+
+import com.spotify.player.Playlist;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Playlists by name, read from their file the first time they are asked for. Nothing is read at startup.
+// Loaded playlists are held through soft references, so cold ones are given back under memory pressure
+// and read again on their next use. A changed playlist cannot be dropped before it is stored, since the
+// write-behind queue keeps it reachable until its file has been replaced.
+class PlaylistStore {
+    private static final Logger logger = LogManager.getLogger(PlaylistStore.class);
+    private static final String FILE_SUFFIX = ".txt";
+
+    private final Path directory;
+    private final Reader reader;
+    private final ConcurrentMap<String, Loaded> playlists = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Playlist> collected = new ReferenceQueue<>();
+
+    interface Reader {
+        Playlist read(Path file) throws IOException;
+    }
+
+    PlaylistStore(Path directory, Reader reader) {
+        this.directory = directory;
+        this.reader = reader;
+    }
+
+    Path fileOf(String name) {
+        return directory.resolve(name.concat(FILE_SUFFIX));
+    }
+
+    Playlist get(String name) {
+        removeCollected();
+        Loaded loaded = playlists.get(name);
+        Playlist playlist = loaded == null ? null : loaded.get();
+        if (playlist != null) {
+            return playlist;
+        }
+
+        // Read outside the map, so a slow file never holds up other names that share its bin. When two
+        // callers read the same file at once, the first one to install its copy wins.
+        Playlist read = read(name);
+        if (read == null) {
+            return null;
+        }
+        Playlist[] found = {read}; // a strong reference so the result cannot be collected on the way out
+        playlists.compute(name, (key, current) -> {
+            Playlist installed = current == null ? null : current.get();
+            if (installed != null) {
+                found[0] = installed;
+                return current;
+            }
+            return new Loaded(key, read, collected);
+        });
+        return found[0];
+    }
+
+    // Returns false when there already is a playlist with that name
+    boolean add(Playlist playlist) {
+        removeCollected();
+        boolean[] added = new boolean[1];
+        playlists.compute(playlist.getName(), (key, current) -> {
+            if ((current != null && current.get() != null) || Files.exists(fileOf(key))) {
+                return current;
+            }
+            added[0] = true;
+            return new Loaded(key, playlist, collected);
+        });
+        return added[0];
+    }
+
+    private Playlist read(String name) {
+        Path file = fileOf(name);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try {
+            return reader.read(file);
+        } catch (IOException e) {
+            logger.error("Could not read playlist file " + file.getFileName());
+            return null;
+        }
+    }
+
+    private void removeCollected() {
+        Reference<? extends Playlist> reference;
+        while ((reference = collected.poll()) != null) {
+            Loaded loaded = (Loaded) reference;
+            playlists.remove(loaded.name, loaded);
+        }
+    }
+
+    private static class Loaded extends SoftReference<Playlist> {
+        private final String name;
+
+        Loaded(String name, Playlist playlist, ReferenceQueue<Playlist> queue) {
+            super(playlist, queue);
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.spotify.storage;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Change counters for playlists, striped by name so memory does not grow with the number of playlists.
+// An edit bumps the counter of its stripe, which only costs the other playlists of that stripe a cache miss.
+class PlaylistVersions {
+    private static final int STRIPES = 1024;
+
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+
+    long version(String playlistName) {
+        return versions.get(stripe(playlistName));
+    }
+
+    // Called after the playlist changed, so a reader that sees the new version also sees the change
+    void changed(String playlistName) {
+        versions.incrementAndGet(stripe(playlistName));
+    }
+
+    private static int stripe(String playlistName) {
+        int hash = playlistName.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+}
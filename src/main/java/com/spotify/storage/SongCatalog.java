@@ -0,0 +1,166 @@
+package com.spotify.storage;
+
+import com.spotify.player.Song;
+import com.spotify.player.SongDictionary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Stable song ids: a song keeps the id it got when it was first seen, ids of removed songs are never reused.
+// Songs known when the snapshot was written are looked up in the mapped snapshot and only turned into Song
+// objects when they are asked for, songs seen since then are kept in memory until the next snapshot.
+// Lookups do not lock; changes are made under the catalog's lock and publish a new entry before its id.
+class SongCatalog implements SongDictionary {
+    private static final String SEPARATOR = " - ";
+
+    private final CatalogSnapshot snapshot;
+    private final Map<String, Integer> ratings;
+    private final Map<Integer, CatalogSnapshot.Entry> added = new ConcurrentHashMap<>();
+    private final Map<String, Integer> addedIds = new ConcurrentHashMap<>();
+    private final Map<Integer, Boolean> presenceChanges = new ConcurrentHashMap<>();
+    private final Map<Integer, Song> songs = new ConcurrentHashMap<>();
+    private volatile int size;
+    private long songsModified;
+
+    SongCatalog(CatalogSnapshot snapshot, Map<String, Integer> ratings) {
+        this.snapshot = snapshot;
+        this.ratings = ratings;
+        this.songsModified = snapshot.songsModified();
+        this.size = snapshot.count();
+    }
+
+    // Brings the catalog in line with the Songs directory, which is only listed when it changed after the
+    // last scan. Returns true when the catalog changed.
+    synchronized boolean scan(Path songsDirectory) throws IOException {
+        long modified = Files.getLastModifiedTime(songsDirectory).toMillis();
+        if (modified == songsModified) {
+            return false;
+        }
+        Set<Integer> found = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(songsDirectory)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String singerName = fileName.substring(0, fileName.indexOf("-") - 1);
+                String songName = fileName.substring(fileName.indexOf("-") + 2, fileName.lastIndexOf("."));
+                found.add(register(singerName, songName));
+            }
+        }
+        for (int id = 0; id < size; id++) {
+            setPresent(id, found.contains(id));
+        }
+        songsModified = modified;
+        return true;
+    }
+
+    // Adds a song that is not in the Songs directory, returns false when the catalog already has it
+    synchronized boolean add(Song song) {
+        String fullName = song.getFullName();
+        int id = idOf(fullName);
+        if (id != UNKNOWN && isPresent(id)) {
+            return false;
+        }
+        // stored before the song can be found, so no other instance gets created for it
+        songs.put(id == UNKNOWN ? size : id, song);
+        if (id == UNKNOWN) {
+            id = register(fullName.substring(0, fullName.indexOf(SEPARATOR)),
+                    fullName.substring(fullName.indexOf(SEPARATOR) + SEPARATOR.length()));
+        }
+        setPresent(id, true);
+        return true;
+    }
+
+    @Override
+    public int idOf(Song song) {
+        return idOf(song.getFullName());
+    }
+
+    int idOf(String fullName) {
+        Integer id = addedIds.get(fullName);
+        return id != null ? id : snapshot.idOf(fullName);
+    }
+
+    String nameOf(int id) {
+        return id >= 0 && id < size ? entry(id).fullName() : null;
+    }
+
+    // The one Song instance of a song in the Songs directory, null for unknown and removed songs
+    @Override
+    public Song song(int id) {
+        if (id < 0 || id >= size || !isPresent(id)) {
+            return null;
+        }
+        return songs.computeIfAbsent(id, key -> {
+            CatalogSnapshot.Entry entry = entry(key);
+            String fullName = entry.fullName();
+            return new Song(fullName.substring(0, entry.singerLength()),
+                    fullName.substring(entry.singerLength() + SEPARATOR.length()),
+                    ratings.getOrDefault(fullName, 0));
+        });
+    }
+
+    Song song(String fullName) {
+        return song(idOf(fullName));
+    }
+
+    List<Song> songs() {
+        List<Song> present = new ArrayList<>();
+        for (int id = 0; id < size; id++) {
+            Song song = song(id);
+            if (song != null) {
+                present.add(song);
+            }
+        }
+        return present;
+    }
+
+    synchronized ByteBuffer encode() {
+        List<CatalogSnapshot.Entry> entries = new ArrayList<>(size);
+        for (int id = 0; id < size; id++) {
+            CatalogSnapshot.Entry entry = entry(id);
+            entries.add(new CatalogSnapshot.Entry(entry.fullName(), entry.singerLength(), isPresent(id)));
+        }
+        return CatalogSnapshot.encode(songsModified, entries);
+    }
+
+    private int register(String singerName, String songName) {
+        String fullName = singerName + SEPARATOR + songName;
+        int id = idOf(fullName);
+        if (id == UNKNOWN) {
+            id = size;
+            added.put(id, new CatalogSnapshot.Entry(fullName, singerName.length(), true));
+            addedIds.put(fullName, id);
+            size = id + 1;
+        }
+        return id;
+    }
+
+    private CatalogSnapshot.Entry entry(int id) {
+        return id < snapshot.count() ? snapshot.entry(id) : added.get(id);
+    }
+
+    private boolean isPresent(int id) {
+        Boolean present = presenceChanges.get(id);
+        if (present != null) {
+            return present;
+        }
+        return id < snapshot.count() ? snapshot.isPresent(id) : added.get(id).present();
+    }
+
+    private void setPresent(int id, boolean present) {
+        if (isPresent(id) != present) {
+            presenceChanges.put(id, present);
+        }
+        if (!present) {
+            songs.remove(id);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.spotify.storage;
+
+import com.spotify.player.Song;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Trigram inverted index over song full names, which include the singers. Songs get dense ids in the order
+// they are added, so every posting list is sorted by construction. A word of three or more characters is
+// looked up by intersecting the posting lists of its trigrams, starting from the shortest, and confirming
+// the few candidates with contains. Shorter words are answered from the trigrams that contain them.
+//
+// Ranked search scores a song by the words it matches, whether each is found in the title or only among the
+// singers, and by how often the song was played. A matched word outweighs any difference in plays and a title
+// match outweighs plays that differ up to 2^16 times. Words that can only match a few songs per requested
+// result are answered by merging their matches. Words that match many songs walk the leaderboard from the
+// highest rating down instead, and stop once no song further down can make the best k, so a common word
+// costs about k songs and not all of its matches. The leaderboard holds the same songs as the index.
+class SongIndex {
+    private static final int GRAM = 3;
+    private static final int TITLE_WEIGHT = 64;
+    private static final int SINGERS_WEIGHT = 48;
+    private static final int MAX_POPULARITY = Integer.SIZE;
+    private static final int EXACT_MATCHES_PER_RESULT = 4;
+    private static final Comparator<Scored> RANKING = Comparator.comparingInt(Scored::score)
+            .thenComparingInt(Scored::rating)
+            .reversed()
+            .thenComparing(scored -> scored.song().getFullName());
+
+    private final Leaderboard leaderboard;
+    private final List<Song> songs = new ArrayList<>();
+    private final Map<Song, Integer> ids = new HashMap<>();
+    private final Map<Long, PostingList> postings = new HashMap<>();
+    private final List<Song> shorterThanGram = new ArrayList<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    SongIndex(Leaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+    }
+
+    void add(Song song) {
+        lock.writeLock().lock();
+        try {
+            if (ids.containsKey(song)) {
+                return;
+            }
+            int id = songs.size();
+            songs.add(song);
+            ids.put(song, id);
+            String name = song.getFullName();
+            if (name.length() < GRAM) {
+                shorterThanGram.add(song);
+            }
+            for (int i = 0; i + GRAM <= name.length(); i++) {
+                // a trigram repeated in the name is only posted once since the last id is already this song
+                postings.computeIfAbsent(trigram(name, i), key -> new PostingList()).append(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // The k songs that match any of the words best, best first
+    List<Song> rank(Collection<String> words, int k) {
+        lock.readLock().lock();
+        try {
+            String[] distinct = words.stream().distinct().toArray(String[]::new);
+            long mostMatches = 0;
+            int bestWordScore = 0;
+            for (String word : distinct) {
+                int most = mostMatches(word);
+                mostMatches += most;
+                bestWordScore += most == 0 ? 0 : TITLE_WEIGHT;
+            }
+            if (mostMatches > (long) k * EXACT_MATCHES_PER_RESULT) {
+                List<Song> walked = walkByRating(distinct, bestWordScore, k, mostMatches);
+                if (walked != null) {
+                    return walked;
+                }
+            }
+            int[][] matches = new int[distinct.length][];
+            for (int i = 0; i < distinct.length; i++) {
+                matches[i] = matches(distinct[i]);
+            }
+            return best(distinct, candidates(matches), k);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // A song further down the leaderboard scores at most every matchable word in the title plus the
+    // popularity of the current rating, and loses to an equal song that comes first by name. The walk gives
+    // up after as many songs as merging the matches would read.
+    private List<Song> walkByRating(String[] words, int bestWordScore, int k, long budget) {
+        PriorityQueue<Scored> best = new PriorityQueue<>(RANKING.reversed());
+        Set<Song> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        long visited = 0;
+        for (Leaderboard.Entry entry : leaderboard.byRating()) {
+            Song song = entry.song();
+            int rating = entry.rating();
+            if (best.size() == k
+                    && RANKING.compare(new Scored(song, bestWordScore + popularity(rating), rating), best.peek()) >= 0) {
+                break;
+            }
+            if (++visited > budget) {
+                return null;
+            }
+            if (!seen.add(song)) {
+                continue;
+            }
+            int score = score(song, words);
+            if (score > 0) {
+                offer(best, new Scored(song, score + popularity(rating), rating), k);
+            }
+        }
+        return ranked(best);
+    }
+
+    // The most songs the word can match: the shortest posting list among its trigrams
+    private int mostMatches(String word) {
+        if (word.length() < GRAM) {
+            return songs.size();
+        }
+        int most = songs.size();
+        for (int i = 0; i + GRAM <= word.length(); i++) {
+            PostingList list = postings.get(trigram(word, i));
+            most = Math.min(most, list == null ? 0 : list.size);
+        }
+        return most;
+    }
+
+    private List<Song> best(String[] words, Candidates candidates, int k) {
+        // candidates grouped by the highest score they can reach, a counting sort since bounds are small
+        int[] starts = new int[words.length * TITLE_WEIGHT + MAX_POPULARITY + 2];
+        for (int i = 0; i < candidates.size; i++) {
+            starts[candidates.bounds[i] + 1]++;
+        }
+        for (int bound = 1; bound < starts.length; bound++) {
+            starts[bound] += starts[bound - 1];
+        }
+        int[] byBound = new int[candidates.size];
+        int[] next = Arrays.copyOf(starts, starts.length);
+        for (int i = 0; i < candidates.size; i++) {
+            byBound[next[candidates.bounds[i]]++] = i;
+        }
+
+        PriorityQueue<Scored> best = new PriorityQueue<>(RANKING.reversed());
+        for (int position = candidates.size - 1; position >= 0; position--) {
+            int candidate = byBound[position];
+            if (best.size() == k && candidates.bounds[candidate] < best.peek().score()) {
+                break;
+            }
+            Song song = songs.get(candidates.ids[candidate]);
+            int rating = candidates.ratings[candidate];
+            offer(best, new Scored(song, score(song, words) + popularity(rating), rating), k);
+        }
+        return ranked(best);
+    }
+
+    private static void offer(PriorityQueue<Scored> best, Scored scored, int k) {
+        if (best.size() < k) {
+            best.add(scored);
+        } else if (RANKING.compare(scored, best.peek()) < 0) {
+            best.poll();
+            best.add(scored);
+        }
+    }
+
+    private static List<Song> ranked(PriorityQueue<Scored> best) {
+        List<Song> ranked = new ArrayList<>(best.size());
+        best.stream().sorted(RANKING).forEach(scored -> ranked.add(scored.song()));
+        return ranked;
+    }
+
+    // Merges the sorted matches of every word into the distinct songs with the number of words each matches
+    private Candidates candidates(int[][] matches) {
+        int total = 0;
+        for (int[] ids : matches) {
+            total += ids.length;
+        }
+        Candidates candidates = new Candidates(total);
+        int[] cursors = new int[matches.length];
+        while (true) {
+            int id = Integer.MAX_VALUE;
+            for (int i = 0; i < matches.length; i++) {
+                if (cursors[i] < matches[i].length) {
+                    id = Math.min(id, matches[i][cursors[i]]);
+                }
+            }
+            if (id == Integer.MAX_VALUE) {
+                return candidates;
+            }
+            int matched = 0;
+            for (int i = 0; i < matches.length; i++) {
+                if (cursors[i] < matches[i].length && matches[i][cursors[i]] == id) {
+                    cursors[i]++;
+                    matched++;
+                }
+            }
+            int rating = songs.get(id).getRating();
+            candidates.add(id, rating, matched * TITLE_WEIGHT + popularity(rating));
+        }
+    }
+
+    private static int score(Song song, String[] words) {
+        String name = song.getFullName();
+        int score = 0;
+        for (String word : words) {
+            if (name.indexOf(word, song.getSongNameStart()) >= 0) {
+                score += TITLE_WEIGHT;
+            } else if (name.contains(word)) {
+                score += SINGERS_WEIGHT;
+            }
+        }
+        return score;
+    }
+
+    // Plays on a logarithmic scale, from 0 for a song never played up to MAX_POPULARITY
+    private static int popularity(int rating) {
+        return rating <= 0 ? 0 : Integer.SIZE - Integer.numberOfLeadingZeros(rating);
+    }
+
+    // Ids of the songs whose full name contains the word, in increasing order
+    private int[] matches(String word) {
+        if (word.isEmpty()) {
+            int[] all = new int[songs.size()];
+            Arrays.setAll(all, id -> id);
+            return all;
+        }
+        return word.length() < GRAM ? matchShort(word) : matchLong(word);
+    }
+
+    private int[] matchLong(String word) {
+        PostingList[] lists = new PostingList[word.length() - GRAM + 1];
+        for (int i = 0; i < lists.length; i++) {
+            lists[i] = postings.get(trigram(word, i));
+            if (lists[i] == null) {
+                return new int[0];
+            }
+        }
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+
+        PostingList found = new PostingList();
+        int[] cursors = new int[lists.length];
+        PostingList shortest = lists[0];
+        candidates:
+        for (int i = 0; i < shortest.size; i++) {
+            int id = shortest.ids[i];
+            for (int j = 1; j < lists.length; j++) {
+                cursors[j] = lists[j].seek(id, cursors[j]);
+                if (cursors[j] == lists[j].size) {
+                    break candidates;
+                }
+                if (lists[j].ids[cursors[j]] != id) {
+                    continue candidates;
+                }
+            }
+            if (songs.get(id).getFullName().contains(word)) { // the trigrams may appear in a different order
+                found.append(id);
+            }
+        }
+        return Arrays.copyOf(found.ids, found.size);
+    }
+
+    // A word shorter than a trigram occurs in a name exactly when it occurs in one of the name's trigrams,
+    // and the number of distinct trigrams depends on the alphabet, not on the size of the catalog
+    private int[] matchShort(String word) {
+        BitSet found = new BitSet(songs.size());
+        for (Map.Entry<Long, PostingList> entry : postings.entrySet()) {
+            if (trigramText(entry.getKey()).contains(word)) {
+                PostingList list = entry.getValue();
+                for (int i = 0; i < list.size; i++) {
+                    found.set(list.ids[i]);
+                }
+            }
+        }
+        for (Song song : shorterThanGram) {
+            if (song.getFullName().contains(word)) {
+                found.set(ids.get(song));
+            }
+        }
+        return found.stream().toArray();
+    }
+
+    private static long trigram(String text, int from) {
+        return ((long) text.charAt(from) << 32) | ((long) text.charAt(from + 1) << 16) | text.charAt(from + 2);
+    }
+
+    private static String trigramText(long trigram) {
+        return new String(new char[]{(char) (trigram >>> 32), (char) (trigram >>> 16), (char) trigram});
+    }
+
+    private record Scored(Song song, int score, int rating) {
+    }
+
+    private static class Candidates {
+        private final int[] ids;
+        private final int[] ratings;
+        private final int[] bounds;
+        private int size = 0;
+
+        Candidates(int capacity) {
+            ids = new int[capacity];
+            ratings = new int[capacity];
+            bounds = new int[capacity];
+        }
+
+        void add(int id, int rating, int bound) {
+            ids[size] = id;
+            ratings[size] = rating;
+            bounds[size] = bound;
+            size++;
+        }
+    }
+
+    private static class PostingList {
+        private int[] ids = new int[2];
+        private int size = 0;
+
+        void append(int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        // Index of the first id not smaller than the given one, searching from the cursor on
+        int seek(int id, int from) {
+            int index = Arrays.binarySearch(ids, from, size, id);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+}
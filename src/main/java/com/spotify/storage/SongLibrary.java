@@ -0,0 +1,212 @@
+package com.spotify.storage;
+
+import com.spotify.player.Playlist;
+import com.spotify.player.Song;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The songs side of storage, shared by every Storage implementation: the catalog, the ratings kept in the
+// play log, and the search index and leaderboard, which are built from the catalog when first needed so
+// that startup does not depend on the size of the catalog. A server can ask for them to be built in the
+// background right away instead, at the cost of a Song for every catalog entry before any request needs it.
+// The catalog snapshot and the play log live under the directory the library is given, the songs themselves
+// are read from the shared Songs directory.
+class SongLibrary {
+    private static final Logger logger = LogManager.getLogger(SongLibrary.class);
+    private static final String SONGS_DIR = "src/main/resources/Songs";
+    private static final String RATINGS_DIR = "Ratings";
+    private static final String CATALOG_FILE = "Catalog/catalog.snapshot";
+    private static final String LEGACY_RATING_FILE = SONGS_DIR.concat("Rating.txt");
+    private static final long PLAY_LOG_FLUSH_INTERVAL_MILLIS = 20;
+    private static final long PLAY_LOG_COMPACT_AFTER_PLAYS = 100_000;
+
+    private final WriteBehind writeBehind;
+    private final Path catalogFile;
+    private final PlayLog playLog;
+    private final SongCatalog catalog;
+    private final AtomicLong catalogVersion = new AtomicLong();
+    private final AtomicLong ratingsVersion = new AtomicLong();
+    private volatile AllSongs allSongs;
+
+    SongLibrary(Path directory, WriteBehind writeBehind) {
+        this.writeBehind = writeBehind;
+        this.catalogFile = directory.resolve(CATALOG_FILE);
+        this.playLog = new PlayLog(directory.resolve(RATINGS_DIR), PLAY_LOG_FLUSH_INTERVAL_MILLIS,
+                PLAY_LOG_COMPACT_AFTER_PLAYS);
+        this.catalog = openCatalog(readRatings());
+    }
+
+    void warmUp() {
+        Thread builder = new Thread(this::allSongs, "spotify-song-index");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    private record AllSongs(Set<Song> songs, SongIndex songIndex, Leaderboard leaderboard) {
+    }
+
+    Set<Song> getSongs() {
+        return allSongs().songs();
+    }
+
+    List<Song> getTopSongs(int count) {
+        return allSongs().leaderboard().top(count);
+    }
+
+    List<Song> searchSongs(Collection<String> words, int count) {
+        return allSongs().songIndex().rank(words, count);
+    }
+
+    Song getSongByFullName(String songFullName) {
+        return catalog.song(songFullName);
+    }
+
+    void updateSongRating(Song song) {
+        allSongs().leaderboard().incrementRating(song);
+        playLog.append(song.getFullName());
+        ratingsVersion.incrementAndGet();
+    }
+
+    void addSong(Song song) {
+        if (catalog.add(song)) {
+            writeBehind.markDirty(catalogFile, catalog::encode);
+            AllSongs all = allSongs();
+            all.songs().add(song);
+            all.songIndex().add(song);
+            all.leaderboard().add(song);
+            catalogVersion.incrementAndGet();
+        }
+    }
+
+    long catalogVersion() {
+        return catalogVersion.get();
+    }
+
+    long ratingsVersion() {
+        return ratingsVersion.get();
+    }
+
+    void flush() {
+        playLog.flush();
+    }
+
+    void close() {
+        playLog.close();
+    }
+
+    int[] songIds(Playlist playlist) {
+        return playlist.songIds(catalog);
+    }
+
+    int songId(Song song) {
+        return catalog.idOf(song);
+    }
+
+    Playlist toPlaylist(StorageCodec.PlaylistRecord record) {
+        int[] songIds = Arrays.stream(record.songIds()).filter(id -> catalog.song(id) != null).toArray();
+        if (songIds.length < record.songIds().length) {
+            logger.error("Playlist " + record.name() + " refers to a song that is no longer in the catalog");
+        }
+        return new Playlist(record.name(), catalog, songIds);
+    }
+
+    // The playlist with its songs as catalog ids, songs that are not in the catalog are left out
+    Playlist bind(Playlist playlist) {
+        if (playlist.usesDictionary(catalog)) {
+            return playlist;
+        }
+        return new Playlist(playlist.getName(), catalog, playlist.songIds(catalog));
+    }
+
+    // Updates go through the leaderboard, which is therefore built before the first rating can change.
+    // Callers that arrive while the builder thread holds the lock wait for it instead of building again.
+    private AllSongs allSongs() {
+        AllSongs all = allSongs;
+        if (all == null) {
+            synchronized (this) {
+                all = allSongs;
+                if (all == null) {
+                    Leaderboard leaderboard = new Leaderboard();
+                    all = new AllSongs(ConcurrentHashMap.newKeySet(), new SongIndex(leaderboard), leaderboard);
+                    all.songs().addAll(catalog.songs());
+                    all.songs().forEach(all.songIndex()::add);
+                    all.songs().forEach(all.leaderboard()::add);
+                    allSongs = all;
+                }
+            }
+        }
+        return all;
+    }
+
+    private SongCatalog openCatalog(Map<String, Integer> ratings) {
+        CatalogSnapshot snapshot = CatalogSnapshot.EMPTY;
+        try {
+            Files.createDirectories(catalogFile.getParent());
+            snapshot = CatalogSnapshot.open(catalogFile);
+        } catch (NoSuchFileException e) {
+            logger.error("Catalog snapshot not found, reading songs from folder");
+        } catch (IOException e) {
+            logger.error("Could not open the catalog snapshot, reading songs from folder");
+        }
+
+        SongCatalog opened = new SongCatalog(snapshot, ratings);
+        try {
+            if (opened.scan(Path.of(SONGS_DIR))) {
+                writeBehind.markDirty(catalogFile, opened::encode);
+            }
+        } catch (IOException e) {
+            logger.error("Could not read songs from folder");
+        }
+        return opened;
+    }
+
+    private Map<String, Integer> readRatings() {
+        try {
+            return playLog.open(SongLibrary::readLegacyRatings);
+        } catch (IOException e) {
+            // starting with every rating at 0 would overwrite them at the next compaction
+            logger.error("Could not read ratings from the play log");
+            throw new UncheckedIOException("Could not read ratings from the play log", e);
+        }
+    }
+
+    // Ratings written by older versions as one serialized set of songs, imported once into the play log
+    private static Map<String, Integer> readLegacyRatings() {
+        Map<String, Integer> ratings = new HashMap<>();
+        if (!new File(LEGACY_RATING_FILE).exists()) {
+            return ratings;
+        }
+        try {
+            FileInputStream fileIn = new FileInputStream(LEGACY_RATING_FILE);
+            ObjectInputStream objectIn = new ObjectInputStream(fileIn);
+            Set<Song> listOfSongs = (HashSet<Song>) objectIn.readObject();
+            for (Song song : listOfSongs) {
+                ratings.put(song.getFullName(), song.getRating());
+            }
+            objectIn.close();
+        } catch (IOException e) {
+            logger.error("Could not read rating from file");
+        } catch (ClassNotFoundException e) {
+            logger.error("Class song not found");
+        }
+        return ratings;
+    }
+}
@@ -3,17 +3,31 @@ package com.spotify.storage;
 import com.spotify.player.Playlist;
 import com.spotify.player.Song;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
-public interface Storage {
+public interface Storage extends AutoCloseable {
     boolean addUser(String email, String password);
     void deleteUser(String email);
     boolean addPlaylist(Playlist playlist);
     boolean addSongToPlaylist(Playlist playlist, Song song);
     boolean doesUserExist(String email, String password);
     Set<Song> getSongs();
+    List<Song> searchSongs(Collection<String> words, int count);
+    List<Song> getTopSongs(int count);
     Song getSongByFullName(String songFullName);
     void updateSongRating(Song song);
     Playlist getPlaylistByName(String playlistName);
     void addSong(Song song);
+    void flush();
+    // Starts building the search index and leaderboard in the background instead of on first use
+    void warmUp();
+    // Writes out pending changes and releases files and threads, the storage is not used afterwards
+    @Override
+    void close();
+    // Change counters of the data behind cacheable replies, they only grow and move after the change is visible
+    long catalogVersion();
+    long ratingsVersion();
+    long playlistVersion(String playlistName);
 }
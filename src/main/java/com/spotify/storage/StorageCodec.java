@@ -0,0 +1,139 @@
+package com.spotify.storage;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Binary formats of the storage files. Every file starts with [magic:int][version:short]; strings are
+// [length:short][utf-8], password hashes are their 32 raw bytes and playlists refer to songs by catalog id.
+// The catalog itself is a CatalogSnapshot.
+final class StorageCodec {
+    static final short VERSION = 1;
+
+    private static final int USERS_MAGIC = 0x53505553; // SPUS
+    private static final int PLAYLIST_MAGIC = 0x5350504C; // SPPL
+    private static final int HEADER_SIZE = Integer.BYTES + Short.BYTES;
+    private static final int PASSWORD_HASH_SIZE = 32;
+    private static final short JAVA_SERIALIZATION_MAGIC = (short) 0xACED;
+
+    private StorageCodec() {
+    }
+
+    record PlaylistRecord(String name, int[] songIds) {
+    }
+
+    // Files written by older versions through ObjectOutputStream
+    static boolean isJavaSerialized(ByteBuffer input) {
+        return input.remaining() >= Short.BYTES && input.getShort(input.position()) == JAVA_SERIALIZATION_MAGIC;
+    }
+
+    static ByteBuffer encodeUsers(Map<String, String> users) {
+        List<byte[]> emails = new ArrayList<>(users.size());
+        List<byte[]> hashes = new ArrayList<>(users.size());
+        int size = HEADER_SIZE + Integer.BYTES;
+        for (Map.Entry<String, String> user : users.entrySet()) {
+            byte[] email = utf8(user.getKey());
+            emails.add(email);
+            hashes.add(hashBytes(user.getValue()));
+            size += Short.BYTES + email.length + PASSWORD_HASH_SIZE;
+        }
+        ByteBuffer output = header(USERS_MAGIC, size).putInt(emails.size());
+        for (int i = 0; i < emails.size(); i++) {
+            putString(output, emails.get(i));
+            output.put(hashes.get(i));
+        }
+        return output.flip();
+    }
+
+    static Map<String, String> decodeUsers(ByteBuffer input) throws IOException {
+        try {
+            checkHeader(input, USERS_MAGIC, "users");
+            int count = input.getInt();
+            if (count < 0 || count > input.remaining() / (Short.BYTES + PASSWORD_HASH_SIZE)) {
+                throw new IOException("Truncated users file");
+            }
+            Map<String, String> users = new HashMap<>(count * 2);
+            byte[] hash = new byte[PASSWORD_HASH_SIZE];
+            for (int i = 0; i < count; i++) {
+                String email = getString(input);
+                input.get(hash);
+                users.put(email, Hex.encodeHexString(hash));
+            }
+            return users;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated users file", e);
+        }
+    }
+
+    static ByteBuffer encodePlaylist(String name, int[] songIds) {
+        byte[] encodedName = utf8(name);
+        int size = HEADER_SIZE + Short.BYTES + encodedName.length + Integer.BYTES + songIds.length * Integer.BYTES;
+        ByteBuffer output = header(PLAYLIST_MAGIC, size);
+        putString(output, encodedName);
+        output.putInt(songIds.length);
+        output.asIntBuffer().put(songIds);
+        output.position(output.position() + songIds.length * Integer.BYTES);
+        return output.flip();
+    }
+
+    static PlaylistRecord decodePlaylist(ByteBuffer input) throws IOException {
+        try {
+            checkHeader(input, PLAYLIST_MAGIC, "playlist");
+            String name = getString(input);
+            int count = input.getInt();
+            if (count < 0 || count > input.remaining() / Integer.BYTES) {
+                throw new IOException("Truncated playlist file");
+            }
+            int[] songIds = new int[count];
+            input.asIntBuffer().get(songIds);
+            input.position(input.position() + songIds.length * Integer.BYTES);
+            return new PlaylistRecord(name, songIds);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated playlist file", e);
+        }
+    }
+
+    private static ByteBuffer header(int magic, int size) {
+        return ByteBuffer.allocate(size).putInt(magic).putShort(VERSION);
+    }
+
+    private static void checkHeader(ByteBuffer input, int magic, String kind) throws IOException {
+        if (input.getInt() != magic) {
+            throw new IOException("Not a " + kind + " file");
+        }
+        short version = input.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported " + kind + " file version " + version);
+        }
+    }
+
+    private static byte[] hashBytes(String passwordHash) {
+        try {
+            return Hex.decodeHex(passwordHash);
+        } catch (DecoderException e) {
+            throw new IllegalArgumentException("Password hash is not a hex encoded SHA-256", e);
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putString(ByteBuffer output, byte[] value) {
+        output.putShort((short) value.length).put(value);
+    }
+
+    private static String getString(ByteBuffer input) {
+        byte[] bytes = new byte[Short.toUnsignedInt(input.getShort())];
+        input.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,8 @@
+package com.spotify.storage;
+
+public enum StorageMode {
+    // users are kept on the heap and playlists are loaded by name, both are written back as whole files
+    MEMORY,
+    // users and playlists live in an on-disk log store, the heap only holds its index and a bounded cache
+    LOG
+}
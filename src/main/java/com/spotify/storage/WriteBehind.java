@@ -0,0 +1,179 @@
+package com.spotify.storage;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Persists changed objects off the request path. Marking an object dirty again before it is written only
+// replaces the pending entry, and the object is serialized when it is written, so a burst of changes to
+// the same object costs one write. All pending objects are written together in a group commit once
+// maxPending objects are dirty or flushInterval has passed; in SYNC mode the commit starts right away
+// and the callers wait for it. Files are replaced through a synced temp file and an atomic rename.
+// An object that could not be written stays pending and is retried after flushInterval, and callers
+// waiting for it are told the write failed instead of being woken as if it were on disk.
+class WriteBehind implements AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(WriteBehind.class);
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final PersistenceMode mode;
+    private final int maxPending;
+    private final long flushIntervalMillis;
+    private final Thread writer;
+    private Map<Path, Dirty> pending = new LinkedHashMap<>();
+    private long marked = 0;
+    private long written = 0; // every mark up to this ticket is on disk
+    private long failedThrough = 0; // the last commit that failed covered the marks up to this ticket
+    private long flushRequested = 0;
+    private long lastCommit = System.currentTimeMillis();
+    private long retryAt = 0;
+    private boolean closed = false;
+
+    WriteBehind(PersistenceMode mode, int maxPending, long flushIntervalMillis) {
+        this.mode = mode;
+        this.maxPending = maxPending;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.writer = new Thread(this::run, "spotify-write-behind");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // A pending object with the first mark it has not been written for, a later mark only replaces the serializer
+    private record Dirty(Supplier<ByteBuffer> serializer, long firstTicket) {
+    }
+
+    // The serializer runs on the writer thread and has to take its own snapshot of the object
+    void markDirty(Path file, Supplier<ByteBuffer> serializer) {
+        long ticket;
+        synchronized (this) {
+            ticket = ++marked;
+            pending.merge(file, new Dirty(serializer, ticket),
+                    (current, marking) -> new Dirty(serializer, current.firstTicket()));
+            notifyAll();
+        }
+        if (mode == PersistenceMode.SYNC && !awaitWritten(ticket)) {
+            logger.error("Could not write " + file + ", it is retried in the background");
+        }
+    }
+
+    // Blocks until everything marked dirty so far is on disk, returns false when a write failed
+    boolean flush() {
+        long ticket;
+        synchronized (this) {
+            ticket = marked;
+            flushRequested = Math.max(flushRequested, ticket);
+            notifyAll();
+        }
+        return awaitWritten(ticket);
+    }
+
+    @Override
+    public void close() {
+        flush();
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+    }
+
+    private synchronized boolean awaitWritten(long ticket) {
+        boolean interrupted = false;
+        while (written < ticket && failedThrough < ticket && writer.isAlive()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return written >= ticket;
+    }
+
+    private void run() {
+        while (true) {
+            Map<Path, Dirty> batch;
+            long batchTicket;
+            synchronized (this) {
+                while (!closed && !shouldCommit()) {
+                    try {
+                        wait(pending.isEmpty() ? 0 : Math.max(1, lastCommit + flushIntervalMillis - System.currentTimeMillis()));
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (closed && pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                batchTicket = marked;
+                pending = new LinkedHashMap<>();
+            }
+
+            Map<Path, Dirty> failed = new LinkedHashMap<>();
+            batch.forEach((file, dirty) -> {
+                if (!write(file, dirty.serializer())) {
+                    failed.put(file, dirty);
+                }
+            });
+
+            synchronized (this) {
+                lastCommit = System.currentTimeMillis();
+                if (failed.isEmpty()) {
+                    written = batchTicket;
+                } else {
+                    // marks before the oldest failed one are on disk, the failed objects are retried unless marked again
+                    written = failed.values().stream().mapToLong(Dirty::firstTicket).min().getAsLong() - 1;
+                    failedThrough = batchTicket;
+                    failed.forEach((file, dirty) -> pending.merge(file, dirty,
+                            (newer, retry) -> new Dirty(newer.serializer(), retry.firstTicket())));
+                    retryAt = lastCommit + flushIntervalMillis;
+                }
+                notifyAll();
+                if (closed && !failed.isEmpty()) {
+                    logger.error("Closing with " + failed.size() + " objects that could not be written");
+                    return;
+                }
+            }
+        }
+    }
+
+    // A flush gets one attempt right away, anything else waits out the retry delay after a failed commit
+    private boolean shouldCommit() {
+        if (pending.isEmpty()) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        return flushRequested > Math.max(written, failedThrough) || (now >= retryAt && (mode == PersistenceMode.SYNC
+                || pending.size() >= maxPending || now - lastCommit >= flushIntervalMillis));
+    }
+
+    private static boolean write(Path file, Supplier<ByteBuffer> serializer) {
+        Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+        try {
+            ByteBuffer content = serializer.get();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (content.hasRemaining()) {
+                    channel.write(content);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.error("Could not write " + file);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.spotify;
+
+import com.spotify.protocol.FrameReader;
+import com.spotify.protocol.Frames;
+import com.spotify.server.DispatchMode;
+import com.spotify.server.PlaybackMode;
+import com.spotify.server.ServerConfig;
+import com.spotify.storage.StorageMode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ServerTest {
+    private static final int SELECTOR_THREADS = 2;
+    private static final int WORKER_THREADS = 4;
+    private static final int CLIENTS = 8;
+    private static final int ROUNDS = 100;
+    private static final String PASSWORD = "secret";
+    private static final long TIMEOUT_MILLIS = 60_000;
+
+    private Server server;
+    private Thread serverThread;
+    private int port;
+
+    @Before
+    public void setup() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        server = new Server(new ServerConfig(port, SELECTOR_THREADS, DispatchMode.POOL, WORKER_THREADS,
+                PlaybackMode.STREAM, StorageMode.MEMORY, false));
+        serverThread = new Thread(server::start, "spotify-test-server");
+        serverThread.start();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        server.stop();
+        serverThread.join();
+    }
+
+    @Test(timeout = TIMEOUT_MILLIS)
+    public void testClientsOnSeveralSelectorThreadsShareStorage() throws Exception {
+        // Given
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+
+        // When
+        runClients(clients, user -> assertEquals(String.format("User %s successfully registered", user),
+                request(user, "register " + user + " " + PASSWORD)));
+
+        // Then
+        runClients(clients, user -> {
+            try (SocketChannel channel = connect()) {
+                String login = request(channel, "login " + user + " " + PASSWORD);
+                assertTrue(login, login.startsWith(String.format("User %s successfully logged in, session ", user)));
+                assertEquals("Successfully disconnected", request(channel, "disconnect"));
+            }
+        });
+        clients.shutdown();
+    }
+
+    private interface UserAction {
+        void run(String user) throws IOException;
+    }
+
+    // Every connection goes to the next selector thread, so the users of one client are spread over all of them
+    private void runClients(ExecutorService clients, UserAction action) throws Exception {
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            String prefix = "server-test-" + i + "-";
+            results.add(clients.submit(() -> {
+                for (int round = 0; round < ROUNDS; round++) {
+                    action.run(prefix + round);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+    }
+
+    private String request(String user, String command) throws IOException {
+        try (SocketChannel channel = connect()) {
+            return request(channel, command);
+        }
+    }
+
+    private SocketChannel connect() throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                return SocketChannel.open(new InetSocketAddress("localhost", port));
+            } catch (IOException e) {
+                if (attempt == 50) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(20); // the server may still be binding its port
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static String request(SocketChannel channel, String command) throws IOException {
+        channel.write(ByteBuffer.wrap((command + Frames.REQUEST_DELIMITER).getBytes(StandardCharsets.UTF_8)));
+        return new FrameReader(channel).read().text().strip();
+    }
+}
@@ -0,0 +1,63 @@
+package com.spotify.bench;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+    @Test
+    public void testPercentilesAreWithinBucketPrecision() {
+        // Given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // When
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        // Then
+        assertEquals(100_000, histogram.count());
+        assertWithinPrecision(50_000_000, histogram.percentile(50));
+        assertWithinPrecision(99_000_000, histogram.percentile(99));
+        assertWithinPrecision(99_900_000, histogram.percentile(99.9));
+        assertEquals(100_000_000, histogram.percentile(100));
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        // Given
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // When
+        histogram.record(3);
+        histogram.record(7);
+        histogram.record(42);
+
+        // Then
+        assertEquals(3, histogram.percentile(1));
+        assertEquals(7, histogram.percentile(50));
+        assertEquals(42, histogram.percentile(100));
+    }
+
+    @Test
+    public void testAddMergesCounts() {
+        // Given
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        first.record(10);
+        second.record(1_000_000);
+
+        // When
+        first.add(second);
+
+        // Then
+        assertEquals(2, first.count());
+        assertEquals(1_000_000, first.max());
+        assertEquals(500_005, first.mean(), 0.001);
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue(expected + " vs " + actual, Math.abs(actual - expected) <= expected / 32);
+    }
+}
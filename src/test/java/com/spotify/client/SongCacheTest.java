@@ -0,0 +1,120 @@
+package com.spotify.client;
+
+import com.spotify.player.WavHeader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class SongCacheTest {
+    private static final WavHeader HEADER = new WavHeader(1, 2, 44_100, 16, 4, 44, 4000);
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("song-cache");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testCompleteStreamIsCachedAsWavFile() throws IOException {
+        // Given
+        SongCache songCache = new SongCache(directory, Long.MAX_VALUE);
+
+        // When
+        stream(songCache, "Azis - Motel", 7, HEADER.dataLength());
+
+        // Then
+        Path file = songCache.lookup("Azis - Motel", 7);
+        assertNotNull(file);
+        assertEquals(7, songCache.version("Azis - Motel"));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertEquals(HEADER, WavHeader.read(channel));
+        }
+    }
+
+    @Test
+    public void testIncompleteStreamIsNotCached() throws IOException {
+        // Given
+        SongCache songCache = new SongCache(directory, Long.MAX_VALUE);
+
+        // When
+        stream(songCache, "Azis - Motel", 7, HEADER.dataLength() / 2);
+
+        // Then
+        assertEquals(-1, songCache.version("Azis - Motel"));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void testLookupOfOtherVersionMisses() throws IOException {
+        // Given
+        SongCache songCache = new SongCache(directory, Long.MAX_VALUE);
+        stream(songCache, "Azis - Motel", 7, HEADER.dataLength());
+
+        // When
+        Path file = songCache.lookup("Azis - Motel", 8);
+
+        // Then
+        assertNull(file);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedSongIsEvictedOverBudget() throws IOException {
+        // Given
+        long entrySize = 44 + HEADER.dataLength();
+        SongCache songCache = new SongCache(directory, 2 * entrySize);
+        stream(songCache, "first", 1, HEADER.dataLength());
+        stream(songCache, "second", 1, HEADER.dataLength());
+        songCache.lookup("first", 1);
+
+        // When
+        stream(songCache, "third", 1, HEADER.dataLength());
+
+        // Then
+        assertEquals(1, songCache.version("first"));
+        assertEquals(-1, songCache.version("second"));
+        assertEquals(1, songCache.version("third"));
+        assertEquals(2 * entrySize, songCache.size());
+    }
+
+    @Test
+    public void testCacheIsRestoredFromDirectory() throws IOException {
+        // Given
+        stream(new SongCache(directory, Long.MAX_VALUE), "Azis - Motel", 7, HEADER.dataLength());
+
+        // When
+        SongCache reopened = new SongCache(directory, Long.MAX_VALUE);
+
+        // Then
+        assertEquals(7, reopened.version("Azis - Motel"));
+        assertNotNull(reopened.lookup("Azis - Motel", 7));
+    }
+
+    private static void stream(SongCache songCache, String songName, long version, long bytes) throws IOException {
+        try (SongCache.Writer writer = songCache.open(songName, HEADER, version)) {
+            writer.write(new byte[(int) bytes]);
+            writer.commit();
+        }
+    }
+}
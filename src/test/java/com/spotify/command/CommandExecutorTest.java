@@ -3,6 +3,8 @@ package com.spotify.command;
 import com.spotify.player.MusicPlayer;
 import com.spotify.player.Playlist;
 import com.spotify.player.Song;
+import com.spotify.protocol.TextProtocol;
+import com.spotify.server.ResponseCache;
 import com.spotify.storage.InMemoryStorage;
 import org.junit.Before;
 import org.junit.Test;
@@ -10,18 +12,22 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import static org.mockito.Mockito.*;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(MockitoJUnitRunner.class)
 public class CommandExecutorTest {
     private static final String LOGIN = "login";
+    private static final String RESUME = "resume";
     private static final String REGISTER = "register";
     private static final String LOGOUT = "logout";
     private static final String DISCONNECT = "disconnect";
@@ -44,14 +50,18 @@ public class CommandExecutorTest {
     private static final Command LOGOUT_COMMAND = new Command(LOGOUT, new String[]{});
     private static final Command DISCONNECT_COMMAND = new Command(DISCONNECT, new String[]{});
 
+    private static final String LOGGED_IN_VLADO = "User Vlado successfully logged in, session ";
+
     private CommandExecutor executor;
+    private SessionTable sessions;
 
     @Mock
     private InMemoryStorage storage;
 
     @Before
     public void setup() {
-        executor = new CommandExecutor(storage, new MusicPlayer());
+        sessions = new SessionTable();
+        executor = new CommandExecutor(storage, new MusicPlayer(), sessions);
     }
 
     @Test
@@ -85,9 +95,41 @@ public class CommandExecutorTest {
         when(storage.doesUserExist("Vlado", "123")).thenReturn(true);
 
         // When
-        String expected = "User Vlado successfully logged in";
         String actual = executor.execute(LOGIN_VLADO);
 
+        // Then
+        assertTrue(actual.startsWith(LOGGED_IN_VLADO));
+        assertEquals("Vlado", sessions.resume(actual.substring(LOGGED_IN_VLADO.length())));
+    }
+
+    @Test
+    public void testResumeSessionFromAnotherConnection() {
+        // Given
+        when(storage.doesUserExist("Vlado", "123")).thenReturn(true);
+        String token = executor.execute(LOGIN_VLADO).substring(LOGGED_IN_VLADO.length());
+        CommandExecutor reconnected = new CommandExecutor(storage, new MusicPlayer(), sessions);
+
+        // When
+        String expected = "User Vlado successfully resumed session";
+        String actual = reconnected.execute(new Command(RESUME, new String[]{token}));
+
+        // Then
+        assertEquals(expected, actual);
+        assertEquals("Successfully logged out", reconnected.execute(LOGOUT_COMMAND));
+        verify(storage, times(1)).doesUserExist("Vlado", "123");
+    }
+
+    @Test
+    public void testResumeAfterLogout() {
+        // Given
+        when(storage.doesUserExist("Vlado", "123")).thenReturn(true);
+        String token = executor.execute(LOGIN_VLADO).substring(LOGGED_IN_VLADO.length());
+        executor.execute(LOGOUT_COMMAND);
+
+        // When
+        String expected = "Session expired or unknown, please login";
+        String actual = executor.execute(new Command(RESUME, new String[]{token}));
+
         // Then
         assertEquals(expected, actual);
     }
@@ -145,13 +187,10 @@ public class CommandExecutorTest {
     public void testSearchWithExistingSong() {
         // Given
         setupUser();
-        Set<Song> songs = new HashSet<>();
-        songs.add(new Song("song", "dummy"));
-        songs.add(new Song("another", "dummy"));
-
+        List<Song> songs = List.of(new Song("song", "dummy"), new Song("another", "dummy"));
 
         // When
-        when(storage.getSongs()).thenReturn(songs);
+        when(storage.searchSongs(List.of("dummy"), 1000)).thenReturn(songs);
         String expected = "[Song{songName='dummy', singersNames=[song]}, Song{songName='dummy', singersNames=[another]}]";
         String actual = executor.execute(new Command(SEARCH, new String[]{"dummy"}));
 
@@ -176,13 +215,10 @@ public class CommandExecutorTest {
     public void testGetTopSongs() {
         // Given
         setupUser();
-        Set<Song> songs = new HashSet<>();
-        songs.add(new Song("song", "second", 5));
-        songs.add(new Song("another", "third", 2));
-        songs.add(new Song("onemore", "first", 7));
+        List<Song> songs = List.of(new Song("onemore", "first", 7), new Song("song", "second", 5));
 
         // When
-        when(storage.getSongs()).thenReturn(songs);
+        when(storage.getTopSongs(2)).thenReturn(songs);
         String expected = "[Song{songName='first', singersNames=[onemore]}, Song{songName='second', singersNames=[song]}]";
         String actual = executor.execute(new Command(GET_TOP, new String[]{"2"}));
 
@@ -427,4 +463,97 @@ public class CommandExecutorTest {
         when(storage.doesUserExist("Vlado", "123")).thenReturn(true);
         executor.execute(LOGIN_VLADO);
     }
+
+    @Test
+    public void testReplyKeyNormalizesArguments() {
+        // Given
+        setupUser();
+        when(storage.catalogVersion()).thenReturn(2L);
+        when(storage.ratingsVersion()).thenReturn(3L);
+
+        // When
+        ReplyKey first = executor.replyKey(new Command(SEARCH, new String[]{"b", "a", "b"}));
+        ReplyKey second = executor.replyKey(new Command(SEARCH, new String[]{"a", "b"}));
+
+        // Then
+        assertEquals(first, second);
+        assertEquals(new ReplyKey(GET_TOP, "5", 2, 3), executor.replyKey(new Command(GET_TOP, new String[]{"05"})));
+        assertNull(executor.replyKey(new Command(GET_TOP, new String[]{"-1"})));
+        assertNull(executor.replyKey(new Command(ADD_SONG_TO, new String[]{"test", "a - b"})));
+    }
+
+    @Test
+    public void testCachedSearchSurvivesAPlay() {
+        // Given
+        setupUser();
+        when(storage.catalogVersion()).thenReturn(2L);
+        when(storage.ratingsVersion()).thenReturn(3L, 4L);
+        ResponseCache cache = new ResponseCache(16 * 1024, 60_000);
+        Command search = new Command(SEARCH, new String[]{"song"});
+        cache.put(TextProtocol.class, executor.replyKey(search), ByteBuffer.wrap(new byte[]{1}));
+
+        // When someone else plays a song, which moves the ratings version
+        ByteBuffer cached = cache.get(TextProtocol.class, executor.replyKey(search));
+
+        // Then
+        assertNotNull(cached);
+    }
+
+    @Test
+    public void testNoReplyKeyWhenNotLoggedIn() {
+        // When
+        ReplyKey key = executor.replyKey(new Command(GET_TOP, new String[]{"5"}));
+
+        // Then
+        assertNull(key);
+    }
+
+    @Test
+    public void testTopIsPagedWithCursor() {
+        // Given
+        setupUser();
+        Song first = new Song("first", "song");
+        Song second = new Song("second", "song");
+        Song third = new Song("third", "song");
+        when(storage.getTopSongs(3)).thenReturn(List.of(first, second, third));
+        String firstPage = executor.execute(new Command(GET_TOP, new String[]{"3", "--limit", "2"}));
+        String cursor = firstPage.substring(firstPage.lastIndexOf(' ') + 1);
+
+        // When
+        String secondPage = executor.execute(new Command(GET_TOP, new String[]{"3", "--limit", "2", "--cursor", cursor}));
+
+        // Then
+        assertEquals(List.of(first, second) + "\nNext page: --cursor " + cursor, firstPage);
+        assertEquals(List.of(third).toString(), secondPage);
+        verify(storage, times(1)).getTopSongs(3);
+    }
+
+    @Test
+    public void testCursorOfAnotherQueryIsRejected() {
+        // Given
+        setupUser();
+        when(storage.getTopSongs(3)).thenReturn(List.of(new Song("a", "a"), new Song("b", "b"), new Song("c", "c")));
+        String firstPage = executor.execute(new Command(GET_TOP, new String[]{"3", "--limit", "1"}));
+        String cursor = firstPage.substring(firstPage.lastIndexOf(' ') + 1);
+
+        // When
+        String expected = "Unknown or expired cursor " + cursor;
+        String actual = executor.execute(new Command(SEARCH, new String[]{"a", "--cursor", cursor}));
+
+        // Then
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testInvalidLimit() {
+        // Given
+        setupUser();
+
+        // When
+        String expected = "Usage: show-playlist <playlistName> [--limit <1-1000>] [--cursor <cursor>]";
+        String actual = executor.execute(new Command(SHOW_PLAYLIST, new String[]{"test", "--limit", "0"}));
+
+        // Then
+        assertEquals(expected, actual);
+    }
 }
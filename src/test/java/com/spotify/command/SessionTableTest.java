@@ -0,0 +1,57 @@
+package com.spotify.command;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+public class SessionTableTest {
+    private static final long TTL_MILLIS = 1000;
+
+    private long now = 0;
+    private final SessionTable sessions = new SessionTable(TTL_MILLIS, () -> now);
+
+    @Test
+    public void testSessionExpiresWhenNotUsed() {
+        // Given
+        String token = sessions.open("Vlado");
+
+        // When
+        now = TTL_MILLIS;
+
+        // Then
+        assertNull(sessions.resume(token));
+    }
+
+    @Test
+    public void testResumeKeepsSessionAlive() {
+        // Given
+        String token = sessions.open("Vlado");
+
+        // When
+        now = TTL_MILLIS - 1;
+        sessions.resume(token);
+        now = TTL_MILLIS * 2 - 2;
+
+        // Then
+        assertEquals("Vlado", sessions.resume(token));
+    }
+
+    @Test
+    public void testCloseAllEndsEverySessionOfUser() {
+        // Given
+        String first = sessions.open("Vlado");
+        String second = sessions.open("Vlado");
+        String other = sessions.open("Petar");
+
+        // When
+        sessions.closeAll("Vlado");
+
+        // Then
+        assertNotEquals(first, second);
+        assertNull(sessions.resume(first));
+        assertNull(sessions.resume(second));
+        assertEquals("Petar", sessions.resume(other));
+    }
+}
@@ -0,0 +1,38 @@
+package com.spotify.player;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PlaybackOffsetTest {
+    private static final WavHeader CD_QUALITY = new WavHeader(1, 2, 44_100, 16, 4, 44, 44_100 * 4 * 180);
+
+    @Test
+    public void testTimeOffsetIsConvertedToFrames() {
+        PlaybackOffset offset = PlaybackOffset.parse("01:30");
+
+        assertTrue(offset.isTime());
+        assertEquals(90L * 44_100 * 4, offset.toDataOffset(CD_QUALITY));
+    }
+
+    @Test
+    public void testByteOffsetIsFrameAligned() {
+        assertEquals(1000, PlaybackOffset.parse("1003").toDataOffset(CD_QUALITY));
+    }
+
+    @Test
+    public void testOffsetAfterTheEndIsCapped() {
+        assertEquals(CD_QUALITY.dataLength(), PlaybackOffset.parse("99:00").toDataOffset(CD_QUALITY));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSecondsAreRejected() {
+        PlaybackOffset.parse("1:75");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeOffsetIsRejected() {
+        PlaybackOffset.parse("-5");
+    }
+}
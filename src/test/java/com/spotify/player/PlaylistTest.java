@@ -0,0 +1,103 @@
+package com.spotify.player;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PlaylistTest {
+    private static final int THREADS = 8;
+    private static final int SONGS = 500;
+
+    @Test
+    public void testSongIsAddedOnce() {
+        Playlist playlist = new Playlist("road");
+
+        assertTrue(playlist.addSong(new Song("Azis", "Motel")));
+        assertFalse(playlist.addSong(new Song("Azis", "Motel")));
+    }
+
+    @Test
+    public void testConcurrentAddsReportEachSongOnce() throws Exception {
+        Playlist playlist = new Playlist("road");
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> {
+                int added = 0;
+                for (int song = 0; song < SONGS; song++) {
+                    if (playlist.addSong(new Song("Singer", "Song " + song))) {
+                        added++;
+                    }
+                }
+                return added;
+            }));
+        }
+
+        int added = 0;
+        for (Future<Integer> result : results) {
+            added += result.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+
+        assertEquals(SONGS, added);
+        assertEquals(SONGS, playlist.getSongs().size());
+    }
+
+    @Test
+    public void testSongsAreResolvedThroughDictionary() {
+        List<Song> catalog = List.of(new Song("Azis", "Motel"), new Song("Bataliona", "Ujen Vqtar"),
+                new Song("Singer", "Song"));
+        SongDictionary dictionary = new SongDictionary() {
+            @Override
+            public int idOf(Song song) {
+                return catalog.indexOf(song);
+            }
+
+            @Override
+            public Song song(int id) {
+                return id >= 0 && id < catalog.size() ? catalog.get(id) : null;
+            }
+        };
+        Playlist playlist = new Playlist("road", dictionary, new int[]{2, 0});
+
+        assertTrue(playlist.addSong(new Song("Bataliona", "Ujen Vqtar")));
+        assertFalse(playlist.addSong(new Song("Pesho", "Unknown")));
+
+        assertEquals(List.of(catalog.get(2), catalog.get(0), catalog.get(1)), playlist.getSongs());
+        assertArrayEquals(new int[]{2, 0, 1}, playlist.songIds(dictionary));
+    }
+
+    @Test
+    public void testSerializedFormIsReadBack() throws IOException, ClassNotFoundException {
+        Playlist playlist = new Playlist("road");
+        playlist.addSong(new Song("Azis", "Motel"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+            objectOut.writeObject(playlist);
+        }
+        Playlist read;
+        try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read = (Playlist) objectIn.readObject();
+        }
+
+        assertEquals(playlist, read);
+        assertTrue(read.addSong(new Song("Bataliona", "Ujen Vqtar")));
+    }
+}
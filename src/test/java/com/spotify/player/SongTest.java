@@ -0,0 +1,52 @@
+package com.spotify.player;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class SongTest {
+    @Test
+    public void testNamesAreDerivedFromFullName() {
+        Song song = new Song("Azis ft. Galena ft. Azis", "Motel");
+
+        assertEquals("Azis ft. Galena ft. Azis - Motel", song.getFullName());
+        assertEquals("Motel", song.getSongName());
+        assertEquals(Set.of("Azis", "Galena"), song.getSingersNames());
+        assertEquals(new File("src/main/resources/Songs/Azis ft. Galena ft. Azis - Motel.wav"), song.getSongFile());
+    }
+
+    @Test
+    public void testEqualSongsHaveEqualHashes() {
+        assertEquals(new Song("Azis", "Motel"), new Song("Azis", "Motel", 5));
+        assertEquals(new Song("Azis", "Motel").hashCode(), new Song("Azis", "Motel", 5).hashCode());
+        assertNotEquals(new Song("Azis", "Motel"), new Song("Azis", "Hotel"));
+    }
+
+    @Test
+    public void testSerializedFormIsReadBack() throws IOException, ClassNotFoundException {
+        Song song = new Song("Azis ft. Galena", "Motel", 7);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+            objectOut.writeObject(song);
+        }
+        Song read;
+        try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read = (Song) objectIn.readObject();
+        }
+
+        assertEquals(song, read);
+        assertEquals(song.hashCode(), read.hashCode());
+        assertEquals(Set.of("Azis", "Galena"), read.getSingersNames());
+        assertEquals(7, read.getRating());
+    }
+}
@@ -0,0 +1,61 @@
+package com.spotify.player;
+
+import org.junit.Test;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WavHeaderTest {
+    @Test
+    public void testReadPcmHeader() throws IOException {
+        AudioFormat format = new AudioFormat(44_100, 16, 2, true, false);
+        Path file = writeWav(format, 1000);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WavHeader header = WavHeader.read(channel);
+
+            assertTrue(header.isPcm());
+            assertEquals(2, header.channels());
+            assertEquals(44_100, header.sampleRate());
+            assertEquals(16, header.bitsPerSample());
+            assertEquals(4, header.blockAlign());
+            assertEquals(4000, header.dataLength());
+            assertEquals(Files.size(file), header.dataOffset() + header.dataLength());
+            assertTrue(format.matches(header.toAudioFormat()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadRejectsNonWavFile() throws IOException {
+        Path file = Files.createTempFile("song", ".wav");
+        Files.write(file, "definitely not a wav file".getBytes());
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WavHeader.read(channel);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    static Path writeWav(AudioFormat format, int frames) throws IOException {
+        Path file = Files.createTempFile("song", ".wav");
+        byte[] samples = ByteBuffer.allocate(frames * format.getFrameSize()).array();
+        AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(samples), format, frames);
+        AudioSystem.write(stream, AudioFileFormat.Type.WAVE, file.toFile());
+        return file;
+    }
+}
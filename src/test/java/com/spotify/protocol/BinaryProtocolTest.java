@@ -0,0 +1,92 @@
+package com.spotify.protocol;
+
+import com.spotify.command.Command;
+import com.spotify.command.Response;
+import com.spotify.command.Status;
+import com.spotify.player.Playlist;
+import com.spotify.player.Song;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BinaryProtocolTest {
+    private static final int MAX_REQUEST_SIZE = 1024;
+
+    private final BinaryProtocol protocol = new BinaryProtocol(MAX_REQUEST_SIZE);
+
+    @Test
+    public void testDecodeLeavesPartialRequestUnread() throws IOException {
+        ByteBuffer request = BinaryProtocol.encodeRequest(Opcode.SEARCH, "Bataliona");
+        ByteBuffer input = ByteBuffer.allocate(request.remaining());
+        input.put(request.duplicate().limit(request.remaining() - 1)).flip();
+
+        assertTrue("partial request should not be decoded", protocol.decode(input).isEmpty());
+        assertEquals("partial request should stay in the buffer", 0, input.position());
+    }
+
+    @Test
+    public void testDecodeUnknownOpcode() throws IOException {
+        ByteBuffer input = ByteBuffer.allocate(6).putInt(2).put((byte) 100).put((byte) 0).flip();
+
+        List<Command> commands = protocol.decode(input);
+
+        assertEquals(1, commands.size());
+        assertEquals("", commands.get(0).command());
+    }
+
+    @Test(expected = IOException.class)
+    public void testDecodeRejectsOversizedRequest() throws IOException {
+        protocol.decode(ByteBuffer.allocate(8).putInt(MAX_REQUEST_SIZE + 1).flip());
+    }
+
+    @Test(expected = IOException.class)
+    public void testDecodeRejectsMalformedArguments() throws IOException {
+        ByteBuffer input = ByteBuffer.allocate(8).putInt(4).put(Opcode.SEARCH.code()).put((byte) 1).putShort((short) 10);
+        protocol.decode(input.flip());
+    }
+
+    @Test
+    public void testEncodeMessageReply() {
+        BinaryReply reply = decode(protocol.encode(Response.of(Status.NOT_LOGGED_IN, "You are not logged in")));
+
+        assertEquals(Status.NOT_LOGGED_IN, reply.status());
+        assertEquals("You are not logged in", reply.message());
+        assertTrue(reply.songs().isEmpty());
+    }
+
+    @Test
+    public void testEncodePlaylistReply() {
+        Playlist playlist = new Playlist("road trip");
+        playlist.addSong(new Song("Azis", "Motel", 3));
+
+        BinaryReply reply = decode(protocol.encode(Response.playlist(playlist)));
+
+        assertEquals(Status.OK, reply.status());
+        assertNull(reply.message());
+        assertEquals("road trip", reply.playlistName());
+        assertArrayEquals(new Object[]{new BinaryReply.SongEntry("Azis - Motel", 3)}, reply.songs().toArray());
+    }
+
+    @Test
+    public void testEncodeSongsPageReply() {
+        BinaryReply reply = decode(protocol.encode(Response.songs(List.of(new Song("Azis", "Motel", 3)), "1a-2")));
+
+        assertEquals(Status.OK, reply.status());
+        assertEquals("1a-2", reply.cursor());
+        assertArrayEquals(new Object[]{new BinaryReply.SongEntry("Azis - Motel", 3)}, reply.songs().toArray());
+    }
+
+    private static BinaryReply decode(ByteBuffer frame) {
+        assertEquals(Frames.BINARY_REPLY, frame.get());
+        byte[] payload = new byte[frame.getInt()];
+        frame.get(payload);
+        return BinaryProtocol.decodeReply(payload);
+    }
+}
@@ -0,0 +1,295 @@
+package com.spotify.server;
+
+import com.spotify.command.Command;
+import com.spotify.command.CommandExecutor;
+import com.spotify.command.Response;
+import com.spotify.command.SessionTable;
+import com.spotify.player.MusicPlayer;
+import com.spotify.protocol.BinaryProtocol;
+import com.spotify.protocol.BinaryReply;
+import com.spotify.protocol.Frame;
+import com.spotify.protocol.FrameReader;
+import com.spotify.protocol.Frames;
+import com.spotify.protocol.Opcode;
+import com.spotify.storage.Storage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ConnectionTest {
+    private static final long FLUSH_TIMEOUT_SECONDS = 10;
+    private static final int DISPATCH_WORKERS = 8;
+    private static final int PIPELINED_REQUESTS = 500;
+
+    private ServerSocketChannel serverChannel;
+    private SocketChannel clientChannel;
+    private Connection connection;
+
+    @Before
+    public void setup() throws IOException {
+        serverChannel = ServerSocketChannel.open().bind(new InetSocketAddress("localhost", 0));
+        clientChannel = SocketChannel.open(serverChannel.getLocalAddress());
+        connection = new Connection(serverChannel.accept(), null);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        connection.getChannel().close();
+        clientChannel.close();
+        serverChannel.close();
+    }
+
+    @Test
+    public void testFragmentedRequestIsReassembled() throws IOException {
+        send("sear");
+        connection.read();
+        assertTrue("incomplete request should not be returned", connection.pollRequests().isEmpty());
+
+        send("ch word\r\n");
+        connection.read();
+        assertEquals(List.of("search word"), pollRequestLines());
+    }
+
+    @Test
+    public void testCoalescedRequestsAreSplit() throws IOException {
+        send("login a b\ntop 3\nman");
+        connection.read();
+        assertEquals(List.of("login a b", "top 3"), pollRequestLines());
+
+        send("\n");
+        connection.read();
+        assertEquals(List.of("man"), pollRequestLines());
+    }
+
+    @Test
+    public void testLongRequestGrowsTheBuffer() throws IOException {
+        String request = "search " + "a".repeat(5000);
+        send(request + "\n");
+        List<String> requests = List.of();
+        while (requests.isEmpty()) {
+            connection.read();
+            requests = pollRequestLines();
+        }
+        assertEquals(List.of(request), requests);
+    }
+
+    @Test
+    public void testLargeReplyIsFramed() throws Exception {
+        send("man\n");
+        connection.read();
+        connection.pollRequests();
+
+        String reply = "x".repeat(100_000);
+        connection.enqueueReply(Response.ok(reply));
+        Future<?> flush = flushInBackground();
+
+        Frame frame = new FrameReader(clientChannel).read();
+        await(flush);
+        assertEquals(Frames.REPLY, frame.type());
+        assertEquals(reply, frame.text());
+    }
+
+    @Test
+    public void testPipelinedRepliesAreGatheredIntoOneWrite() throws IOException {
+        // Given
+        send("man\ntop 3\nsearch word\n");
+        connection.read();
+        List<Command> requests = connection.pollRequests();
+
+        // When
+        for (Command request : requests) {
+            connection.enqueueReply(Response.ok("reply to " + request.command()));
+        }
+
+        // Then
+        assertEquals(3, connection.nextWriteBatch().length);
+        assertTrue("small replies should be written by one flush", connection.flush());
+        FrameReader frameReader = new FrameReader(clientChannel);
+        for (String command : List.of("man", "top", "search")) {
+            assertEquals("reply to " + command, frameReader.read().text());
+        }
+    }
+
+    @Test
+    public void testGatheringWriteIsCapped() throws IOException {
+        // Given
+        int replies = Connection.MAX_BUFFERS_PER_WRITE + 36;
+        for (int i = 0; i < replies; i++) {
+            connection.enqueueReply(Frames.reply("reply " + i));
+        }
+
+        // When
+        ByteBuffer[] batch = connection.nextWriteBatch();
+        boolean flushed = connection.flush();
+
+        // Then
+        assertEquals(Connection.MAX_BUFFERS_PER_WRITE, batch.length);
+        assertTrue("every batch should be written", flushed);
+        FrameReader frameReader = new FrameReader(clientChannel);
+        for (int i = 0; i < replies; i++) {
+            assertEquals("reply " + i, frameReader.read().text());
+        }
+    }
+
+    @Test
+    public void testBinaryHandshakeSwitchesProtocol() throws Exception {
+        clientChannel.write(BinaryProtocol.handshake());
+        clientChannel.write(BinaryProtocol.encodeRequest(Opcode.LOGIN, "user", "pass word"));
+        clientChannel.write(BinaryProtocol.encodeRequest(Opcode.TOP, "3"));
+
+        List<Command> commands = List.of();
+        while (commands.size() < 2) {
+            connection.read();
+            commands = concat(commands, connection.pollRequests());
+        }
+
+        assertEquals("login", commands.get(0).command());
+        assertArrayEquals(new String[]{"user", "pass word"}, commands.get(0).arguments());
+        assertEquals("top", commands.get(1).command());
+        assertArrayEquals(new String[]{"3"}, commands.get(1).arguments());
+
+        Future<?> flush = flushInBackground();
+        Frame frame = new FrameReader(clientChannel).read();
+        await(flush);
+        assertEquals("handshake should be acknowledged with a binary reply", Frames.BINARY_REPLY, frame.type());
+        BinaryReply reply = BinaryProtocol.decodeReply(frame.payload());
+        assertEquals("Binary protocol version 1", reply.message());
+    }
+
+    @Test
+    public void testPooledDispatchKeepsReplyOrder() throws Exception {
+        // Given
+        Storage storage = mock(Storage.class);
+        when(storage.addUser(anyString(), anyString())).thenAnswer(invocation -> {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(2)); // workers finish out of order
+            return true;
+        });
+        CommandDispatcher dispatcher = new CommandDispatcher(DispatchMode.POOL, DISPATCH_WORKERS);
+        SelectorThread selectorThread = new SelectorThread(storage, new SessionTable(), new MusicPlayer(), dispatcher,
+                PlaybackMode.STREAM);
+        Connection dispatched = new Connection(connection.getChannel(), selectorThread);
+        dispatched.setCommandExecutor(new CommandExecutor(storage, new MusicPlayer()));
+        StringBuilder pipeline = new StringBuilder();
+        for (int i = 0; i < PIPELINED_REQUESTS; i++) {
+            pipeline.append("register user").append(i).append(" pass\n");
+        }
+        send(pipeline.toString());
+
+        // When
+        AtomicBoolean stopped = new AtomicBoolean();
+        FutureTask<Void> flusher = new FutureTask<>(() -> {
+            while (!stopped.get()) {
+                dispatched.flush();
+            }
+            return null;
+        });
+        new Thread(flusher).start();
+        int dispatchedRequests = 0;
+        while (dispatchedRequests < PIPELINED_REQUESTS) {
+            dispatched.read();
+            List<Command> requests = dispatched.pollRequests();
+            dispatchedRequests += requests.size();
+            dispatcher.dispatch(dispatched, requests); // as the selector thread does after every read
+        }
+        FrameReader frameReader = new FrameReader(clientChannel);
+        List<String> replies = new ArrayList<>();
+        for (int i = 0; i < PIPELINED_REQUESTS; i++) {
+            replies.add(frameReader.read().text());
+        }
+        stopped.set(true);
+        await(flusher);
+        dispatcher.shutdown();
+
+        // Then
+        for (int i = 0; i < PIPELINED_REQUESTS; i++) {
+            assertEquals("User user" + i + " successfully registered", replies.get(i));
+        }
+    }
+
+    @Test
+    public void testFailingCommandGetsAReplyAndLaterCommandsStillRun() throws Exception {
+        // Given
+        Storage storage = mock(Storage.class);
+        when(storage.addUser(anyString(), anyString())).thenReturn(true);
+        when(storage.addUser(eq("broken"), anyString())).thenThrow(new IllegalStateException("storage failure"));
+        CommandDispatcher dispatcher = new CommandDispatcher(DispatchMode.INLINE, DISPATCH_WORKERS);
+        SelectorThread selectorThread = new SelectorThread(storage, new SessionTable(), new MusicPlayer(), dispatcher,
+                PlaybackMode.STREAM);
+        Connection dispatched = new Connection(connection.getChannel(), selectorThread);
+        dispatched.setCommandExecutor(new CommandExecutor(storage, new MusicPlayer()));
+        send("register broken pass\nadd-song-to\nregister first pass\n");
+
+        // When
+        dispatched.read();
+        dispatcher.dispatch(dispatched, dispatched.pollRequests());
+        send("register second pass\n");
+        dispatched.read();
+        dispatcher.dispatch(dispatched, dispatched.pollRequests());
+        assertTrue(dispatched.flush());
+
+        // Then
+        FrameReader frameReader = new FrameReader(clientChannel);
+        assertEquals("Could not execute register", frameReader.read().text());
+        assertTrue(frameReader.read().text().startsWith("Invalid count of arguments: \"add-song-to\""));
+        assertEquals("User first successfully registered", frameReader.read().text());
+        assertEquals("User second successfully registered", frameReader.read().text());
+    }
+
+    private List<String> pollRequestLines() throws IOException {
+        return connection.pollRequests().stream()
+                .map(command -> String.join(" ", concat(List.of(command.command()), List.of(command.arguments()))))
+                .collect(Collectors.toList());
+    }
+
+    private static <T> List<T> concat(List<T> first, List<T> second) {
+        return Stream.concat(first.stream(), second.stream()).collect(Collectors.toList());
+    }
+
+    // The client reads while the flush runs, so a reply larger than the socket buffers can be written out.
+    // A failure in the flush fails the test once its future is awaited.
+    private Future<?> flushInBackground() {
+        FutureTask<Void> flush = new FutureTask<>(() -> {
+            while (!connection.flush()) {
+                Thread.onSpinWait();
+            }
+            return null;
+        });
+        new Thread(flush).start();
+        return flush;
+    }
+
+    private static void await(Future<?> flush) throws Exception {
+        flush.get(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void send(String text) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            clientChannel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.spotify.server;
+
+import com.spotify.command.ReplyKey;
+import com.spotify.protocol.BinaryProtocol;
+import com.spotify.protocol.TextProtocol;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResponseCacheTest {
+    private static final long RATINGS_STALENESS_MILLIS = 60_000;
+
+    private final ResponseCache cache = new ResponseCache(16 * 1024, RATINGS_STALENESS_MILLIS);
+
+    @Test
+    public void testReplyIsServedUntilVersionChanges() {
+        // Given
+        cache.put(TextProtocol.class, new ReplyKey("top", "3", 1, 0), reply("songs"));
+
+        // When
+        ByteBuffer first = cache.get(TextProtocol.class, new ReplyKey("top", "3", 1, 0));
+        ByteBuffer second = cache.get(TextProtocol.class, new ReplyKey("top", "3", 1, 0));
+        ByteBuffer stale = cache.get(TextProtocol.class, new ReplyKey("top", "3", 2, 0));
+
+        // Then
+        assertEquals("songs", text(first));
+        assertEquals("songs", text(second));
+        assertNull(stale);
+        assertNull(cache.get(TextProtocol.class, new ReplyKey("top", "3", 1, 0)));
+    }
+
+    @Test
+    public void testRepliesAreKeptPerProtocol() {
+        // Given
+        cache.put(TextProtocol.class, new ReplyKey("top", "3", 1, 0), reply("text"));
+
+        // When
+        ByteBuffer binary = cache.get(BinaryProtocol.class, new ReplyKey("top", "3", 1, 0));
+
+        // Then
+        assertNull(binary);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedRepliesAreEvicted() {
+        // Given
+        for (int i = 0; i < 64; i++) {
+            cache.put(TextProtocol.class, new ReplyKey("search", "word" + i, 1, 0), reply("x".repeat(512)));
+        }
+
+        // When
+        int cached = 0;
+        for (int i = 0; i < 64; i++) {
+            if (cache.get(TextProtocol.class, new ReplyKey("search", "word" + i, 1, 0)) != null) {
+                cached++;
+            }
+        }
+
+        // Then
+        assertNotNull(cache.get(TextProtocol.class, new ReplyKey("search", "word63", 1, 0)));
+        assertTrue(cached < 64);
+    }
+
+    @Test
+    public void testNewerRatingsWithinTheStalenessWindowStillHit() {
+        // Given
+        cache.put(TextProtocol.class, new ReplyKey("top", "3", 1, 1), reply("songs"));
+
+        // When
+        ByteBuffer afterPlay = cache.get(TextProtocol.class, new ReplyKey("top", "3", 1, 2));
+        ByteBuffer afterCatalogChange = cache.get(TextProtocol.class, new ReplyKey("top", "3", 2, 2));
+
+        // Then
+        assertEquals("songs", text(afterPlay));
+        assertNull(afterCatalogChange);
+    }
+
+    @Test
+    public void testNewerRatingsDropAReplyOlderThanTheStalenessWindow() {
+        // Given
+        ResponseCache fresh = new ResponseCache(16 * 1024, 0);
+        fresh.put(TextProtocol.class, new ReplyKey("top", "3", 1, 1), reply("songs"));
+
+        // When
+        ByteBuffer sameRatings = fresh.get(TextProtocol.class, new ReplyKey("top", "3", 1, 1));
+        ByteBuffer afterPlay = fresh.get(TextProtocol.class, new ReplyKey("top", "3", 1, 2));
+
+        // Then
+        assertEquals("songs", text(sameRatings));
+        assertNull(afterPlay);
+    }
+
+    private static ByteBuffer reply(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String text(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
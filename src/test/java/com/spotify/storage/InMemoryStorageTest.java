@@ -1,21 +1,50 @@
 package com.spotify.storage;
 
+import com.spotify.player.Playlist;
 import com.spotify.player.Song;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class InMemoryStorageTest {
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 200;
+    private static final String SINGER = "Concurrent Singer";
+    private static final String PASSWORD = "password";
+    private static final String PLAYLIST = "in-memory-storage-test";
+    private static final long TIMEOUT_MILLIS = 60_000;
+
     private Storage storage;
+    private final List<String> addedUsers = new ArrayList<>();
 
     @Before
     public void setup() {
         storage = new InMemoryStorage();
     }
 
+    @After
+    public void tearDown() throws IOException {
+        addedUsers.forEach(storage::deleteUser);
+        storage.flush();
+        Files.deleteIfExists(Path.of("src/main/resources/Playlists", PLAYLIST + ".txt"));
+    }
+
     @Test
     public void doesUserExistWhenHeDoesNot() {
         boolean actual = storage.doesUserExist("mail", "password");
@@ -35,4 +64,49 @@ public class InMemoryStorageTest {
         Song actual = storage.getSongByFullName("song - test");
         assertNull(actual);
     }
+
+    @Test(timeout = TIMEOUT_MILLIS)
+    public void testConcurrentUsersPlaylistChangesAndSearches() throws Exception {
+        // Given
+        Set<Song> songs = new HashSet<>();
+        for (int i = 0; i < THREADS * ROUNDS; i++) {
+            Song song = new Song(SINGER, "track " + i);
+            storage.addSong(song);
+            songs.add(storage.getSongByFullName(song.getFullName()));
+        }
+        Playlist playlist = new Playlist(PLAYLIST);
+        storage.addPlaylist(playlist);
+        Playlist stored = storage.getPlaylistByName(PLAYLIST);
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> results = new ArrayList<>();
+
+        // When
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            String user = "in-memory-storage-test-" + thread + "-";
+            for (int round = 0; round < ROUNDS; round++) {
+                addedUsers.add(user + round);
+            }
+            results.add(threads.submit(() -> {
+                for (int round = 0; round < ROUNDS; round++) {
+                    assertTrue(storage.addUser(user + round, PASSWORD));
+                    Song song = storage.getSongByFullName(SINGER + " - track " + (thread * ROUNDS + round));
+                    assertTrue(storage.addSongToPlaylist(stored, song));
+                    assertFalse(storage.searchSongs(List.of(SINGER), THREADS * ROUNDS).isEmpty());
+                }
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get();
+        }
+        threads.shutdown();
+
+        // Then
+        for (String user : addedUsers) {
+            assertTrue(user, storage.doesUserExist(user, PASSWORD));
+        }
+        assertEquals(songs, new HashSet<>(stored.getSongs()));
+        assertEquals(songs, new HashSet<>(storage.searchSongs(List.of(SINGER), THREADS * ROUNDS)));
+    }
 }
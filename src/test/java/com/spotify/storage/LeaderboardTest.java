@@ -0,0 +1,69 @@
+package com.spotify.storage;
+
+import com.spotify.player.Song;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class LeaderboardTest {
+    @Test
+    public void testTopOrdersByRatingThenName() {
+        // Given
+        Leaderboard leaderboard = new Leaderboard();
+        Song first = new Song("onemore", "first", 7);
+        Song second = new Song("song", "second", 5);
+        Song third = new Song("another", "third", 5);
+        List.of(second, first, third).forEach(leaderboard::add);
+
+        // When
+        List<Song> top = leaderboard.top(2);
+
+        // Then
+        assertEquals(List.of(first, third), top);
+    }
+
+    @Test
+    public void testIncrementMovesSongUp() {
+        // Given
+        Leaderboard leaderboard = new Leaderboard();
+        Song first = new Song("onemore", "first", 2);
+        Song second = new Song("song", "second", 1);
+        List.of(first, second).forEach(leaderboard::add);
+
+        // When
+        leaderboard.incrementRating(second);
+        leaderboard.incrementRating(second);
+
+        // Then
+        assertEquals(List.of(second, first), leaderboard.top(5));
+        assertEquals(3, second.getRating());
+    }
+
+    @Test
+    public void testConcurrentIncrementsKeepOneEntryPerSong() throws InterruptedException {
+        // Given
+        Leaderboard leaderboard = new Leaderboard();
+        Song first = new Song("onemore", "first");
+        Song second = new Song("song", "second");
+        List.of(first, second).forEach(leaderboard::add);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        // When
+        for (int i = 0; i < 4000; i++) {
+            Song song = i % 4 == 0 ? second : first;
+            executor.execute(() -> leaderboard.incrementRating(song));
+        }
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(3000, first.getRating());
+        assertEquals(1000, second.getRating());
+        assertEquals(List.of(first, second), leaderboard.top(5));
+    }
+}
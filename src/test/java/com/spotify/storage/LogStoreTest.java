@@ -0,0 +1,135 @@
+package com.spotify.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LogStoreTest {
+    private static final long SEGMENT_BYTES = 256;
+    private static final long CACHE_BYTES = 1024;
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("log-store");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testPutGetAndDelete() throws IOException {
+        // Given
+        try (LogStore store = open()) {
+            // When
+            store.put("a", bytes("1"));
+            boolean addedAgain = store.putIfAbsent("a", bytes("2"));
+            boolean deleted = store.delete("a");
+
+            // Then
+            assertFalse(addedAgain);
+            assertTrue(deleted);
+            assertNull(store.get("a"));
+            assertFalse(store.delete("a"));
+            assertEquals(0, store.size());
+        }
+    }
+
+    @Test
+    public void testValuesSurviveReopening() throws IOException {
+        // Given
+        try (LogStore store = open()) {
+            for (int i = 0; i < 50; i++) {
+                store.put("key" + i, bytes("value" + i));
+            }
+            store.update("key7", current -> bytes("changed"));
+            store.delete("key8");
+        }
+
+        // When
+        try (LogStore store = open()) {
+            // Then
+            assertEquals(49, store.size());
+            assertArrayEquals(bytes("value3"), store.get("key3"));
+            assertArrayEquals(bytes("changed"), store.get("key7"));
+            assertNull(store.get("key8"));
+        }
+    }
+
+    @Test
+    public void testMergeKeepsLatestValues() throws IOException {
+        // Given
+        try (LogStore store = open()) {
+            for (int round = 0; round < 10; round++) {
+                for (int i = 0; i < 10; i++) {
+                    store.put("key" + i, bytes("value" + i + "-" + round));
+                }
+            }
+            store.delete("key0");
+
+            // When
+            store.merge();
+
+            // Then
+            assertNull(store.get("key0"));
+            assertArrayEquals(bytes("value5-9"), store.get("key5"));
+        }
+        try (LogStore store = open()) {
+            assertEquals(9, store.size());
+            assertArrayEquals(bytes("value9-9"), store.get("key9"));
+        }
+    }
+
+    @Test
+    public void testTornRecordIsDiscarded() throws IOException {
+        // Given
+        try (LogStore store = open()) {
+            store.put("a", bytes("1"));
+            store.put("b", bytes("2"));
+        }
+        Path segment = directory.resolve("segment-0.log");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        // When
+        try (LogStore store = open()) {
+            store.put("c", bytes("3"));
+        }
+
+        // Then
+        try (LogStore store = open()) {
+            assertArrayEquals(bytes("1"), store.get("a"));
+            assertNull(store.get("b"));
+            assertArrayEquals(bytes("3"), store.get("c"));
+        }
+    }
+
+    private LogStore open() throws IOException {
+        return new LogStore(directory, PersistenceMode.BATCHED, SEGMENT_BYTES, CACHE_BYTES);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
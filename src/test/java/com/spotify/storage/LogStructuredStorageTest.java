@@ -0,0 +1,81 @@
+package com.spotify.storage;
+
+import com.spotify.player.Playlist;
+import com.spotify.player.Song;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LogStructuredStorageTest {
+    private static final String PASSWORD = "password";
+    private static final String PLAYLIST = "road";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+    private Storage storage;
+
+    @Before
+    public void setUp() {
+        directory = folder.getRoot().toPath();
+        storage = new LogStructuredStorage(directory);
+    }
+
+    @After
+    public void tearDown() {
+        storage.close();
+    }
+
+    @Test
+    public void testRestartOnTheSameDirectoryRecoversUsersPlaylistsAndRatings() {
+        // Given
+        Song song = new Song("Recovery Singer", "Recovery Song");
+        storage.addSong(song);
+        storage.addUser("kept", PASSWORD);
+        storage.addUser("deleted", PASSWORD);
+        storage.deleteUser("deleted");
+        Playlist playlist = new Playlist(PLAYLIST);
+        storage.addPlaylist(playlist);
+        storage.addSongToPlaylist(playlist, storage.getSongByFullName(song.getFullName()));
+        storage.updateSongRating(storage.getSongByFullName(song.getFullName()));
+        storage.close();
+
+        // When
+        storage = new LogStructuredStorage(directory);
+
+        // Then
+        assertTrue(storage.doesUserExist("kept", PASSWORD));
+        assertFalse(storage.doesUserExist("deleted", PASSWORD));
+        assertFalse(storage.addUser("kept", PASSWORD));
+        assertEquals(List.of(song), storage.getPlaylistByName(PLAYLIST).getSongs());
+        assertEquals(1, storage.getSongByFullName(song.getFullName()).getRating());
+        assertTrue(Files.exists(directory.resolve("Catalog").resolve("catalog.snapshot")));
+        assertTrue(Files.exists(directory.resolve("Ratings").resolve("ratings.snapshot")));
+    }
+
+    @Test
+    public void testCloseTwiceIsHarmless() {
+        // Given
+        storage.addUser("kept", PASSWORD);
+
+        // When
+        storage.close();
+        storage.flush();
+        storage.close();
+        storage = new LogStructuredStorage(directory);
+
+        // Then
+        assertTrue(storage.doesUserExist("kept", PASSWORD));
+    }
+}
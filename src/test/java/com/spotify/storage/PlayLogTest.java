@@ -0,0 +1,146 @@
+package com.spotify.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PlayLogTest {
+    private static final long FLUSH_INTERVAL_MILLIS = 10;
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("play-log");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testPlaysAreReplayedOnTopOfLegacyRatings() throws IOException {
+        // Given
+        try (PlayLog playLog = new PlayLog(directory, FLUSH_INTERVAL_MILLIS, Long.MAX_VALUE)) {
+            playLog.open(() -> Map.of("Azis - Motel", 5));
+            playLog.append("Azis - Motel");
+            playLog.append("Bataliona - Ujen Vqtar");
+        }
+
+        // When
+        Map<String, Integer> ratings = reopen(Long.MAX_VALUE);
+
+        // Then
+        assertEquals(Map.of("Azis - Motel", 6, "Bataliona - Ujen Vqtar", 1), ratings);
+    }
+
+    @Test
+    public void testCompactionKeepsRatingsAndDropsOldLogs() throws IOException {
+        // Given
+        try (PlayLog playLog = new PlayLog(directory, FLUSH_INTERVAL_MILLIS, 3)) {
+            playLog.open(Map::of);
+            for (int i = 0; i < 10; i++) {
+                playLog.append("Azis - Motel");
+                playLog.flush();
+            }
+        }
+
+        // When
+        Map<String, Integer> ratings = reopen(3);
+
+        // Then
+        assertEquals(Map.of("Azis - Motel", 10), ratings);
+        assertEquals(List.of("plays-2.log", "plays-3.log", "ratings.snapshot", "ratings.snapshot.previous"), files());
+    }
+
+    @Test
+    public void testCorruptSnapshotIsRebuiltFromThePreviousOne() throws IOException {
+        // Given
+        try (PlayLog playLog = new PlayLog(directory, FLUSH_INTERVAL_MILLIS, 3)) {
+            playLog.open(Map::of);
+            for (int i = 0; i < 10; i++) {
+                playLog.append("Azis - Motel");
+                playLog.flush();
+            }
+        }
+        Files.write(directory.resolve("ratings.snapshot"), new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9});
+
+        // When
+        Map<String, Integer> ratings;
+        try (PlayLog playLog = new PlayLog(directory, FLUSH_INTERVAL_MILLIS, 3)) {
+            ratings = playLog.open(Map::of);
+            playLog.append("Azis - Motel");
+        }
+
+        // Then
+        assertEquals(Map.of("Azis - Motel", 10), ratings);
+        assertEquals(Map.of("Azis - Motel", 11), reopen(3));
+        assertTrue(files().contains("ratings.snapshot.corrupt"));
+    }
+
+    @Test
+    public void testUnreadableSnapshotWithoutAPreviousOneFailsToOpen() throws IOException {
+        // Given
+        try (PlayLog playLog = new PlayLog(directory, FLUSH_INTERVAL_MILLIS, Long.MAX_VALUE)) {
+            playLog.open(() -> Map.of("Azis - Motel", 5));
+        }
+        Files.write(directory.resolve("ratings.snapshot"), new byte[]{1, 2, 3});
+        PlayLog playLog = new PlayLog(directory, FLUSH_INTERVAL_MILLIS, Long.MAX_VALUE);
+
+        // When
+        try {
+            playLog.open(Map::of);
+            fail("A play log whose ratings cannot be read must not open with every rating at 0");
+        } catch (IOException expected) {
+            // Then
+            playLog.append("Azis - Motel");
+            playLog.close();
+        }
+    }
+
+    @Test
+    public void testTornRecordAtTheEndIsDiscarded() throws IOException {
+        // Given
+        try (PlayLog playLog = new PlayLog(directory, FLUSH_INTERVAL_MILLIS, Long.MAX_VALUE)) {
+            playLog.open(Map::of);
+            playLog.append("Azis - Motel");
+        }
+        Files.write(directory.resolve("plays-0.log"), new byte[]{1, 2, 3, 4, 0, 9}, StandardOpenOption.APPEND);
+
+        // When
+        Map<String, Integer> ratings = reopen(Long.MAX_VALUE);
+
+        // Then
+        assertEquals(Map.of("Azis - Motel", 1), ratings);
+        assertEquals(Map.of("Azis - Motel", 1), reopen(Long.MAX_VALUE));
+    }
+
+    private Map<String, Integer> reopen(long compactAfterPlays) throws IOException {
+        try (PlayLog playLog = new PlayLog(directory, FLUSH_INTERVAL_MILLIS, compactAfterPlays)) {
+            return playLog.open(Map::of);
+        }
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.spotify.storage;
+
+import com.spotify.player.Playlist;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PlaylistStoreTest {
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    private Path directory;
+    private AtomicInteger reads;
+    private PlaylistStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("playlists");
+        reads = new AtomicInteger();
+        store = new PlaylistStore(directory, file -> {
+            reads.incrementAndGet();
+            String content = Files.readString(file);
+            if (content.isEmpty()) {
+                throw new IOException("Empty playlist file");
+            }
+            return new Playlist(content);
+        });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testPlaylistIsReadOnFirstUseOnly() throws IOException {
+        // Given
+        Files.writeString(store.fileOf("road"), "road");
+
+        // When
+        Playlist first = store.get("road");
+        Playlist second = store.get("road");
+
+        // Then
+        assertEquals("road", first.getName());
+        assertSame(first, second);
+        assertEquals(1, reads.get());
+    }
+
+    @Test
+    public void testUnreadableFileOnlyLosesItsOwnPlaylist() throws IOException {
+        // Given
+        Files.writeString(store.fileOf("broken"), "");
+        Files.writeString(store.fileOf("road"), "road");
+
+        // Then
+        assertNull(store.get("broken"));
+        assertEquals("road", store.get("road").getName());
+        assertNull(store.get("missing"));
+    }
+
+    @Test
+    public void testAddRejectsStoredAndLoadedNames() throws IOException {
+        // Given
+        Files.writeString(store.fileOf("road"), "road");
+
+        // Then
+        assertFalse(store.add(new Playlist("road")));
+        assertTrue(store.add(new Playlist("gym")));
+        assertFalse(store.add(new Playlist("gym")));
+        assertEquals(0, reads.get());
+    }
+
+    @Test(timeout = TIMEOUT_MILLIS)
+    public void testSlowReadDoesNotBlockOtherPlaylists() throws Exception {
+        // Given "a" and "q" fall into the same bin of the map, and reading "a" blocks until released
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PlaylistStore slowStore = new PlaylistStore(directory, file -> {
+            if (file.equals(store.fileOf("a"))) {
+                reading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+            }
+            return new Playlist(Files.readString(file));
+        });
+        Files.writeString(store.fileOf("a"), "a");
+        Files.writeString(store.fileOf("q"), "q");
+        Playlist[] slow = new Playlist[1];
+        Thread reader = new Thread(() -> slow[0] = slowStore.get("a"));
+        reader.start();
+        reading.await();
+
+        // When
+        Playlist other;
+        try {
+            other = slowStore.get("q");
+        } finally {
+            release.countDown();
+            reader.join();
+        }
+
+        // Then
+        assertEquals("q", other.getName());
+        assertEquals("a", slow[0].getName());
+        assertSame(slow[0], slowStore.get("a"));
+    }
+}
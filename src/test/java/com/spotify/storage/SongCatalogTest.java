@@ -0,0 +1,112 @@
+package com.spotify.storage;
+
+import com.spotify.player.Song;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SongCatalogTest {
+    private Path directory;
+    private Path songs;
+    private Path snapshot;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("song-catalog");
+        songs = Files.createDirectory(directory.resolve("Songs"));
+        snapshot = directory.resolve("catalog.snapshot");
+        Files.createFile(songs.resolve("Azis - Motel.wav"));
+        Files.createFile(songs.resolve("Bataliona - Ujen Vqtar.wav"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testSnapshotKeepsIdsAndRatings() throws IOException {
+        // Given
+        SongCatalog written = new SongCatalog(CatalogSnapshot.EMPTY, Map.of());
+        written.scan(songs);
+        write(written.encode());
+
+        // When
+        SongCatalog catalog = new SongCatalog(CatalogSnapshot.open(snapshot), Map.of("Azis - Motel", 7));
+
+        // Then
+        int id = written.idOf("Azis - Motel");
+        assertEquals(id, catalog.idOf("Azis - Motel"));
+        assertEquals("Azis - Motel", catalog.nameOf(id));
+        Song song = catalog.song("Azis - Motel");
+        assertEquals(new Song("Azis", "Motel"), song);
+        assertEquals(7, song.getRating());
+        assertSame(song, catalog.song(id));
+        assertEquals(SongCatalog.UNKNOWN, catalog.idOf("Nobody - Nothing"));
+    }
+
+    @Test
+    public void testUnchangedSongsFolderIsNotScannedAgain() throws IOException {
+        // Given
+        SongCatalog written = new SongCatalog(CatalogSnapshot.EMPTY, Map.of());
+        written.scan(songs);
+        write(written.encode());
+
+        // When
+        SongCatalog catalog = new SongCatalog(CatalogSnapshot.open(snapshot), Map.of());
+
+        // Then
+        assertFalse(catalog.scan(songs));
+        assertEquals(2, catalog.songs().size());
+    }
+
+    @Test
+    public void testChangedSongsFolderIsScannedAgain() throws IOException {
+        // Given
+        SongCatalog written = new SongCatalog(CatalogSnapshot.EMPTY, Map.of());
+        written.scan(songs);
+        write(written.encode());
+        int motel = written.idOf("Azis - Motel");
+        Files.delete(songs.resolve("Bataliona - Ujen Vqtar.wav"));
+        Files.createFile(songs.resolve("Singer - New Song.wav"));
+        Files.setLastModifiedTime(songs, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+
+        // When
+        SongCatalog catalog = new SongCatalog(CatalogSnapshot.open(snapshot), Map.of());
+        boolean changed = catalog.scan(songs);
+
+        // Then
+        assertTrue(changed);
+        assertEquals(motel, catalog.idOf("Azis - Motel"));
+        assertNull(catalog.song("Bataliona - Ujen Vqtar"));
+        assertEquals(new Song("Singer", "New Song"), catalog.song("Singer - New Song"));
+        assertEquals(2, catalog.songs().size());
+    }
+
+    private void write(ByteBuffer encoded) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            while (encoded.hasRemaining()) {
+                channel.write(encoded);
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.spotify.storage;
+
+import com.spotify.player.Song;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+public class SongIndexTest {
+    private static final List<Song> SONGS = List.of(
+            new Song("Azis", "Motel"),
+            new Song("Bataliona", "Ujen Vqtar"),
+            new Song("Azis ft. Galena", "Haide Pak"),
+            new Song("Galena", "Aaaa"),
+            new Song("Motel", "Azis"));
+
+    private Leaderboard leaderboard;
+    private SongIndex songIndex;
+
+    @Before
+    public void setup() {
+        leaderboard = new Leaderboard();
+        songIndex = new SongIndex(leaderboard);
+        SONGS.forEach(this::add);
+    }
+
+    @Test
+    public void testRankMatchesContainsForEveryWord() {
+        for (String word : List.of("Azis", "Motel", "tel", "a", "Az", " - ", "ena", "aaa", "Aaaa", "Pak", "zz",
+                "Motel - Azis", "Galena - A", "sizA", "", "ft. G")) {
+            assertEquals(word, bruteForce(word), new HashSet<>(songIndex.rank(List.of(word), SONGS.size())));
+        }
+    }
+
+    @Test
+    public void testRankWithUnknownTrigramFindsNothing() {
+        assertTrue(songIndex.rank(List.of("xyz"), SONGS.size()).isEmpty());
+    }
+
+    @Test
+    public void testAddedSongIsSearchable() {
+        // Given
+        Song song = new Song("Preslava", "Pusni me");
+
+        // When
+        add(song);
+
+        // Then
+        assertEquals(List.of(song), songIndex.rank(List.of("Pusn"), SONGS.size()));
+    }
+
+    @Test
+    public void testRankPutsTitleMatchesBeforeSingerMatches() {
+        // When
+        List<Song> ranked = songIndex.rank(List.of("Azis"), 10);
+
+        // Then
+        assertEquals(List.of(new Song("Motel", "Azis"), new Song("Azis", "Motel"), new Song("Azis ft. Galena", "Haide Pak")),
+                ranked);
+    }
+
+    @Test
+    public void testRankPutsSongsMatchingMoreWordsFirst() {
+        // Given
+        Song played = new Song("Galena", "Motel", 1_000_000);
+        add(played);
+
+        // When
+        List<Song> ranked = songIndex.rank(List.of("Azis", "Motel"), 2);
+
+        // Then
+        assertEquals(List.of(new Song("Azis", "Motel"), new Song("Motel", "Azis")), ranked);
+    }
+
+    @Test
+    public void testRankKeepsTheBestByRatingAmongEqualMatches() {
+        // Given
+        setupEmpty();
+        List<Song> songs = new ArrayList<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            Song song = new Song("Singer " + i, "the song " + i, random.nextInt(100_000));
+            songs.add(song);
+            add(song);
+        }
+        songs.sort(Comparator.comparingInt(Song::getRating).reversed().thenComparing(Song::getFullName));
+
+        // When
+        List<Song> ranked = songIndex.rank(List.of("the"), 50);
+
+        // Then
+        assertEquals(songs.subList(0, 50), ranked);
+    }
+
+    @Test
+    public void testCommonWordOnlyReadsTheSongsItReturns() {
+        // Given
+        setupEmpty();
+        List<Song> songs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Song song = spy(new Song("Singer " + i, "love song " + i, 1000 - i));
+            songs.add(song);
+            add(song);
+        }
+        clearInvocations(songs.toArray());
+
+        // When
+        List<Song> ranked = songIndex.rank(List.of("love"), 10);
+
+        // Then
+        assertEquals(songs.subList(0, 10), ranked);
+        for (Song song : songs.subList(10, songs.size())) {
+            verify(song, never()).getFullName();
+        }
+    }
+
+    @Test
+    public void testWalkByRatingAgreesWithMergedMatches() {
+        // Given
+        setupEmpty();
+        List<String> words = List.of("love", "night", "rain", "dance", "fire");
+        Random random = new Random(11);
+        for (int i = 0; i < 3000; i++) {
+            String title = words.get(random.nextInt(words.size())) + " " + words.get(random.nextInt(words.size()));
+            add(new Song(words.get(random.nextInt(words.size())) + " band " + i, title + " " + i,
+                    random.nextInt(4) == 0 ? 0 : random.nextInt(5000)));
+        }
+
+        for (List<String> query : List.of(List.of("love"), List.of("rain", "fire"), List.of("night", "band", "o"))) {
+            // When
+            List<Song> walked = songIndex.rank(query, 20);
+            List<Song> merged = songIndex.rank(query, Integer.MAX_VALUE / 8);
+
+            // Then
+            assertEquals(query.toString(), merged.subList(0, 20), walked);
+        }
+    }
+
+    private void setupEmpty() {
+        leaderboard = new Leaderboard();
+        songIndex = new SongIndex(leaderboard);
+    }
+
+    private void add(Song song) {
+        songIndex.add(song);
+        leaderboard.add(song);
+    }
+
+    private static Set<Song> bruteForce(String word) {
+        Set<Song> found = new HashSet<>();
+        for (Song song : SONGS) {
+            if (song.getFullName().contains(word)) {
+                found.add(song);
+            }
+        }
+        return found;
+    }
+}
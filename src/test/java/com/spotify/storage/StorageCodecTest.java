@@ -0,0 +1,93 @@
+package com.spotify.storage;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StorageCodecTest {
+
+    @Test
+    public void testUsersRoundTrip() throws IOException {
+        // Given
+        Map<String, String> users = Map.of("alice@mail.com", DigestUtils.sha256Hex("secret"),
+                "bob@mail.com", DigestUtils.sha256Hex("hunter2"));
+
+        // When
+        Map<String, String> decoded = StorageCodec.decodeUsers(StorageCodec.encodeUsers(users));
+
+        // Then
+        assertEquals(users, decoded);
+    }
+
+    @Test
+    public void testPlaylistRoundTrip() throws IOException {
+        // Given
+        int[] songIds = {4, 0, 17};
+
+        // When
+        StorageCodec.PlaylistRecord decoded = StorageCodec.decodePlaylist(StorageCodec.encodePlaylist("road", songIds));
+
+        // Then
+        assertEquals("road", decoded.name());
+        assertArrayEquals(songIds, decoded.songIds());
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownVersionIsRejected() throws IOException {
+        // Given
+        ByteBuffer encoded = StorageCodec.encodeUsers(Map.of("alice@mail.com", DigestUtils.sha256Hex("secret")));
+        encoded.putShort(Integer.BYTES, (short) (StorageCodec.VERSION + 1));
+
+        // When
+        StorageCodec.decodeUsers(encoded);
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedPlaylistIsRejected() throws IOException {
+        // Given
+        ByteBuffer encoded = StorageCodec.encodePlaylist("road", new int[]{1, 2, 3});
+        encoded.limit(encoded.limit() - 1);
+
+        // When
+        StorageCodec.decodePlaylist(encoded);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNegativeUserCountIsRejected() throws IOException {
+        StorageCodec.decodeUsers(usersWithCount(-1));
+    }
+
+    @Test(expected = IOException.class)
+    public void testUserCountLargerThanTheFileIsRejected() throws IOException {
+        StorageCodec.decodeUsers(usersWithCount(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testJavaSerializedFilesAreDetected() throws IOException {
+        // Given
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOut = new ObjectOutputStream(bytes)) {
+            objectOut.writeObject(new HashMap<>(Map.of("alice@mail.com", "hash")));
+        }
+
+        // Then
+        assertTrue(StorageCodec.isJavaSerialized(ByteBuffer.wrap(bytes.toByteArray())));
+        assertFalse(StorageCodec.isJavaSerialized(StorageCodec.encodeUsers(Map.of())));
+    }
+
+    private static ByteBuffer usersWithCount(int count) {
+        ByteBuffer encoded = StorageCodec.encodeUsers(Map.of("alice@mail.com", DigestUtils.sha256Hex("secret")));
+        return encoded.putInt(Integer.BYTES + Short.BYTES, count);
+    }
+}
@@ -0,0 +1,111 @@
+package com.spotify.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WriteBehindTest {
+    private static final long LONG_INTERVAL_MILLIS = 60_000;
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("write-behind");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testRepeatedChangesAreCoalescedIntoOneWrite() throws IOException {
+        // Given
+        Path file = directory.resolve("users.txt");
+        AtomicInteger serializations = new AtomicInteger();
+        AtomicInteger version = new AtomicInteger();
+
+        try (WriteBehind writeBehind = new WriteBehind(PersistenceMode.BATCHED, 1000, LONG_INTERVAL_MILLIS)) {
+            // When
+            for (int i = 0; i < 100; i++) {
+                version.incrementAndGet();
+                writeBehind.markDirty(file, () -> {
+                    serializations.incrementAndGet();
+                    return ByteBuffer.wrap(new byte[]{(byte) version.get()});
+                });
+            }
+            assertFalse(Files.exists(file));
+            writeBehind.flush();
+
+            // Then
+            assertEquals(1, serializations.get());
+            assertArrayEquals(new byte[]{100}, Files.readAllBytes(file));
+        }
+    }
+
+    @Test
+    public void testGroupCommitStartsWhenEnoughObjectsAreDirty() throws InterruptedException {
+        // Given
+        try (WriteBehind writeBehind = new WriteBehind(PersistenceMode.BATCHED, 2, LONG_INTERVAL_MILLIS)) {
+            // When
+            writeBehind.markDirty(directory.resolve("first.txt"), () -> ByteBuffer.wrap(new byte[]{1}));
+            writeBehind.markDirty(directory.resolve("second.txt"), () -> ByteBuffer.wrap(new byte[]{2}));
+
+            // Then
+            for (int i = 0; i < 100 && !Files.exists(directory.resolve("second.txt")); i++) {
+                Thread.sleep(10);
+            }
+            assertTrue(Files.exists(directory.resolve("first.txt")));
+            assertTrue(Files.exists(directory.resolve("second.txt")));
+        }
+    }
+
+    @Test
+    public void testSyncModeWritesBeforeReturning() throws IOException {
+        // Given
+        Path file = directory.resolve("playlist.txt");
+
+        try (WriteBehind writeBehind = new WriteBehind(PersistenceMode.SYNC, 1000, LONG_INTERVAL_MILLIS)) {
+            // When
+            writeBehind.markDirty(file, () -> ByteBuffer.wrap(new byte[]{7}));
+
+            // Then
+            assertArrayEquals(new byte[]{7}, Files.readAllBytes(file));
+        }
+    }
+
+    @Test
+    public void testFailedWriteIsKeptAndRetried() throws IOException {
+        // Given
+        Path file = directory.resolve("missing").resolve("users.txt");
+
+        try (WriteBehind writeBehind = new WriteBehind(PersistenceMode.BATCHED, 1000, LONG_INTERVAL_MILLIS)) {
+            writeBehind.markDirty(file, () -> ByteBuffer.wrap(new byte[]{1}));
+            assertFalse("a write into a missing directory should fail", writeBehind.flush());
+
+            // When
+            writeBehind.markDirty(file, () -> ByteBuffer.wrap(new byte[]{2}));
+            Files.createDirectories(file.getParent());
+
+            // Then
+            assertTrue(writeBehind.flush());
+            assertArrayEquals(new byte[]{2}, Files.readAllBytes(file));
+        }
+    }
+}